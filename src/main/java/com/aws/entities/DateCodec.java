@@ -0,0 +1,111 @@
+package com.aws.entities;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+//Converts work item dates between yyyy-MM-dd text, epoch days and java.sql.Date.
+//Every method is static and thread safe. Parsing reads the digits directly rather than going
+//through DateTimeFormatter, and formatted dates are kept in a small table indexed by epoch day,
+//so the few distinct dates of a report or item list are only formatted once.
+public final class DateCodec {
+
+    private static final int CACHE_SIZE = 4096;
+
+    //Entries are immutable, so a thread sees either a complete entry or an older one
+    private static final Formatted[] CACHE = new Formatted[CACHE_SIZE];
+
+    private DateCodec() {
+    }
+
+    //Parses yyyy-MM-dd, ignoring surrounding whitespace, and returns the epoch day
+    public static int parseEpochDay(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start)))
+            start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1)))
+            end--;
+
+        if (end - start != 10 || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-')
+            throw invalid(text);
+        int year = digits(text, start, 4);
+        int month = digits(text, start + 5, 2);
+        int day = digits(text, start + 8, 2);
+        if (year < 0 || month < 0 || day < 0)
+            throw invalid(text);
+
+        try {
+            return (int) LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            throw new DateTimeParseException(e.getMessage(), text, start);
+        }
+    }
+
+    public static LocalDate parse(CharSequence text) {
+        return LocalDate.ofEpochDay(parseEpochDay(text));
+    }
+
+    //Returns the epoch day as yyyy-MM-dd
+    public static String format(int epochDay) {
+        int slot = epochDay & (CACHE_SIZE - 1);
+        Formatted cached = CACHE[slot];
+        if (cached != null && cached.epochDay == epochDay)
+            return cached.text;
+
+        String text = toText(epochDay);
+        CACHE[slot] = new Formatted(epochDay, text);
+        return text;
+    }
+
+    public static java.sql.Date toSqlDate(int epochDay) {
+        return java.sql.Date.valueOf(LocalDate.ofEpochDay(epochDay));
+    }
+
+    private static String toText(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        int year = date.getYear();
+        if (year < 0 || year > 9999)
+            return date.toString();
+
+        char[] c = new char[10];
+        c[0] = (char) ('0' + year / 1000);
+        c[1] = (char) ('0' + year / 100 % 10);
+        c[2] = (char) ('0' + year / 10 % 10);
+        c[3] = (char) ('0' + year % 10);
+        c[4] = '-';
+        c[5] = (char) ('0' + date.getMonthValue() / 10);
+        c[6] = (char) ('0' + date.getMonthValue() % 10);
+        c[7] = '-';
+        c[8] = (char) ('0' + date.getDayOfMonth() / 10);
+        c[9] = (char) ('0' + date.getDayOfMonth() % 10);
+        return new String(c);
+    }
+
+    //Returns the value of count decimal digits, or -1 when one of the characters is not a digit
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char ch = text.charAt(i);
+            if (ch < '0' || ch > '9')
+                return -1;
+            value = value * 10 + (ch - '0');
+        }
+        return value;
+    }
+
+    private static DateTimeParseException invalid(CharSequence text) {
+        return new DateTimeParseException("Text '" + text + "' is not a yyyy-MM-dd date", text, 0);
+    }
+
+    private static final class Formatted {
+
+        private final int epochDay;
+        private final String text;
+
+        private Formatted(int epochDay, String text) {
+            this.epochDay = epochDay;
+            this.text = text;
+        }
+    }
+}
@@ -1,28 +1,47 @@
 package com.aws.entities;
 
-public class WorkItem {
-
-    private String id;
-    private String name;
-    private String guide ;
-    private String date;
-    private String description;
-    private String status;
-
-
-    public void SetId (String id)
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+
+//An immutable work item, created with a Builder.
+//The date is kept as a count of days since 1970-01-01 rather than as a String, and names, guides
+//and statuses, which repeat across most rows, share one instance per distinct value.
+public final class WorkItem {
+
+    //Epoch day of an item without a date, such as the id, description and status of a change
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    //Values up to POOLED_LENGTH characters are shared until the pool holds POOL_SIZE of them;
+    //longer or later values are kept as they are
+    private static final int POOL_SIZE = 4096;
+    private static final int POOLED_LENGTH = 64;
+    private static final ConcurrentHashMap<String, String> POOL = new ConcurrentHashMap<String, String>();
+
+    private final String id;
+    private final String name;
+    private final String guide;
+    private final int epochDay;
+    private final String description;
+    private final String status;
+
+    private WorkItem(Builder builder)
     {
-        this.id = id;
+        this.id = builder.id;
+        this.name = pooled(builder.name);
+        this.guide = pooled(builder.guide);
+        this.epochDay = builder.epochDay;
+        this.description = builder.description;
+        this.status = pooled(builder.status);
     }
 
-    public String getId()
+    public static Builder builder()
     {
-        return this.id;
+        return new Builder();
     }
 
-    public void SetStatus (String status)
+    public String getId()
     {
-        this.status = status;
+        return this.id;
     }
 
     public String getStatus()
@@ -30,31 +49,31 @@ public class WorkItem {
         return this.status;
     }
 
-    public void SetDescription (String description)
-    {
-        this.description = description;
-    }
-
     public String getDescription()
     {
         return this.description;
     }
 
-
-    public void SetDate (String date)
+    public boolean hasDate()
     {
-        this.date = date;
+        return this.epochDay != NO_DATE;
     }
 
-    public String getDate()
+    //Days since 1970-01-01, or NO_DATE
+    public int getEpochDay()
     {
-        return this.date;
+        return this.epochDay;
     }
 
+    public LocalDate getLocalDate()
+    {
+        return hasDate() ? LocalDate.ofEpochDay(this.epochDay) : null;
+    }
 
-    public void SetName (String name)
+    //The date as yyyy-MM-dd, or null
+    public String getDate()
     {
-        this.name = name;
+        return hasDate() ? DateCodec.format(this.epochDay) : null;
     }
 
     public String getName()
@@ -62,14 +81,83 @@ public class WorkItem {
         return this.name;
     }
 
-    public void SetGuide (String guide)
+    public String getGuide()
     {
-        this.guide = guide;
+        return this.guide;
     }
 
-    public String getGuide()
+    private static String pooled(String value)
     {
-        return this.guide;
+        if (value == null || value.length() > POOLED_LENGTH)
+            return value;
+        String shared = POOL.get(value);
+        if (shared != null)
+            return shared;
+        if (POOL.size() >= POOL_SIZE)
+            return value;
+        shared = POOL.putIfAbsent(value, value);
+        return shared == null ? value : shared;
     }
 
+    public static class Builder {
+
+        private String id;
+        private String name;
+        private String guide;
+        private int epochDay = NO_DATE;
+        private String description;
+        private String status;
+
+        private Builder()
+        {
+        }
+
+        public Builder id(String id)
+        {
+            this.id = id;
+            return this;
+        }
+
+        public Builder name(String name)
+        {
+            this.name = name;
+            return this;
+        }
+
+        public Builder guide(String guide)
+        {
+            this.guide = guide;
+            return this;
+        }
+
+        public Builder epochDay(int epochDay)
+        {
+            this.epochDay = epochDay;
+            return this;
+        }
+
+        //A null date leaves the item without one
+        public Builder date(LocalDate date)
+        {
+            this.epochDay = date == null ? NO_DATE : Math.toIntExact(date.toEpochDay());
+            return this;
+        }
+
+        public Builder description(String description)
+        {
+            this.description = description;
+            return this;
+        }
+
+        public Builder status(String status)
+        {
+            this.status = status;
+            return this;
+        }
+
+        public WorkItem build()
+        {
+            return new WorkItem(this);
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package com.aws.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Outcome of a bulk import: how many records were read and inserted, how many chunks were
+//committed and what went wrong with the rest (capped at maxErrors messages)
+public class BulkIngestReport {
+
+    private final int maxErrors;
+    private int records;
+    private int inserted;
+    private int rejected;
+    private int committedChunks;
+    private int failedChunks;
+    private final List<String> errors = new ArrayList<String>();
+
+    public BulkIngestReport(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    void recordRead() {
+        records++;
+    }
+
+    void recordRejected(int recordNumber, String message) {
+        rejected++;
+        addError("record " + recordNumber + ": " + message);
+    }
+
+    void chunkCommitted(int rows) {
+        committedChunks++;
+        inserted += rows;
+    }
+
+    //rows is the number of batched rows; records of the range rejected by validation are already counted
+    void chunkFailed(int firstRecord, int lastRecord, int rows, String message) {
+        failedChunks++;
+        rejected += rows;
+        addError("records " + firstRecord + "-" + lastRecord + ": " + message);
+    }
+
+    void inputFailed(String message) {
+        addError("input: " + message);
+    }
+
+    private void addError(String error) {
+        if (errors.size() < maxErrors)
+            errors.add(error);
+    }
+
+    public int getRecords() {
+        return records;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public int getCommittedChunks() {
+        return committedChunks;
+    }
+
+    public int getFailedChunks() {
+        return failedChunks;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
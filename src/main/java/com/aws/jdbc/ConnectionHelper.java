@@ -1,35 +1,32 @@
 package com.aws.jdbc;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import javax.sql.DataSource;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
 public class ConnectionHelper
 {
-    private String url;
+    private final DataSource dataSource;
+    private final ConnectionLimiter limiter;
 
-    private static ConnectionHelper instance;
-    private ConnectionHelper()
+    @Autowired
+    public ConnectionHelper(DataSource dataSource, ConnectionLimiter limiter)
     {
-        url = "jdbc:mysql://localhost:3306/mydb";
+        this.dataSource = dataSource;
+        this.limiter = limiter;
     }
-    
-    public static Connection getConnection() throws SQLException {
-        if (instance == null) {
-
-
-            instance = new ConnectionHelper();
-        }
-        try {
 
-            Class.forName("com.mysql.jdbc.Driver").newInstance();
-            return DriverManager.getConnection(instance.url, "root","root");
-        }
-        catch (Exception e) {
-            e.getStackTrace();
-        }
-        return null;
+    //Borrows a connection from the pool - closing it returns it to the pool
+    public Connection getConnection() throws SQLException {
+        if (limiter.isEnabled())
+            return limiter.borrow(dataSource);
+        return dataSource.getConnection();
     }
+
     public static void close(Connection connection)
     {
         try {
@@ -0,0 +1,100 @@
+package com.aws.jdbc;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+//Caps the number of connections borrowed at the same time at tracker.jdbc.max-concurrency (0 for no cap).
+//With request threads on virtual threads there can be thousands of callers; the cap keeps them queued
+//here in a fair order, fails them after tracker.jdbc.acquire-timeout-ms instead of letting them all wait
+//on the pool, and bounds how many threads are inside the MySQL driver, whose synchronized blocks hold
+//on to a carrier thread while a query runs.
+@Component
+public class ConnectionLimiter {
+
+    private final int maxConcurrency;
+    private final long timeoutNanos;
+    private final Semaphore permits;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ConnectionLimiter(@Value("${tracker.jdbc.max-concurrency:0}") int maxConcurrency,
+                             @Value("${tracker.jdbc.acquire-timeout-ms:5000}") long timeoutMillis) {
+        this.maxConcurrency = maxConcurrency;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency, true) : null;
+    }
+
+    public boolean isEnabled() {
+        return permits != null;
+    }
+
+    //Waits for a permit; the permit is given back when the returned connection is closed
+    public Connection borrow(DataSource dataSource) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new SQLTransientConnectionException("Too many concurrent database requests");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database permit", e);
+        }
+        long waited = System.nanoTime() - start;
+        acquired.increment();
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        Connection c;
+        try {
+            c = dataSource.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return releasingOnClose(c);
+    }
+
+    //Proxies the connection so that the first close also gives back the permit
+    private Connection releasingOnClose(Connection c) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(c, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true))
+                            permits.release();
+                    }
+                });
+    }
+
+    @Override
+    public String toString() {
+        if (permits == null)
+            return "";
+        long count = acquired.sum();
+        return String.format("db.limit=%d%ndb.inUse=%d%ndb.waiting=%d%ndb.rejected=%d%n"
+                        + "db.wait.avg.ms=%.3f%ndb.wait.max.ms=%.3f%n",
+                maxConcurrency, maxConcurrency - permits.availablePermits(), permits.getQueueLength(),
+                rejected.sum(), count == 0 ? 0 : waitNanos.sum() / 1e6 / count, maxWaitNanos.get() / 1e6);
+    }
+}
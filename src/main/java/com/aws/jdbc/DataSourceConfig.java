@@ -0,0 +1,25 @@
+package com.aws.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class DataSourceConfig {
+
+    //Creates the pooled DataSource from the spring.datasource.* settings in application.properties.
+    //The pool is started lazily on the first borrow and closed by Spring on shutdown.
+    @Bean(destroyMethod = "close")
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties, PoolMetrics poolMetrics) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+
+        //Record borrow wait times and timeouts
+        dataSource.setMetricsTrackerFactory(poolMetrics);
+        return dataSource;
+    }
+}
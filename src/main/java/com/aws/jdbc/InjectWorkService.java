@@ -2,47 +2,72 @@ package com.aws.jdbc;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList ;
-import java.util.Date;
-import java.util.UUID;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import com.aws.entities.DateCodec;
 import com.aws.entities.WorkItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
 @Component
 public class InjectWorkService {
 
-    //Inject a new submission
-    public String modifySubmission(String id, String desc, String status)
+    //Statement texts are fixed and every value is bound as a parameter
+    private static final String INSERT_SQL = "INSERT INTO work (idwork, username,date,description, guide, status, archive) VALUES(?,?, ?,?,?,?,?)";
+    private static final String UPDATE_SQL = "update work set description = ?, status = ? where idwork = ? and username = ?";
+
+    //Column sizes of the work table
+    private static final int MAX_DESCRIPTION = 400;
+    private static final int MAX_GUIDE = 45;
+    private static final int MAX_STATUS = 400;
+
+    private final ConnectionHelper connectionHelper;
+    private final StatementCache statementCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final WorkItemIds itemIds;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public InjectWorkService(ConnectionHelper connectionHelper, StatementCache statementCache,
+                             ApplicationEventPublisher eventPublisher, WorkItemIds itemIds,
+                             @Value("${tracker.ingest.chunk-size:500}") int chunkSize,
+                             @Value("${tracker.ingest.max-errors:100}") int maxErrors) {
+        this.connectionHelper = connectionHelper;
+        this.statementCache = statementCache;
+        this.eventPublisher = eventPublisher;
+        this.itemIds = itemIds;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    //Modify the description and status of an item of the user.
+    //Returns the id, or null when the user has no item with that id.
+    public String modifySubmission(String id, String username, String desc, String status)
     {
         Connection c = null;
-        int rowCount= 0;
         try {
             // Create a Connection object
-            c =  ConnectionHelper.getConnection();
+            c =  connectionHelper.getConnection();
 
             //Use prepared statements to protected against SQL injection attacks
-            //  PreparedStatement pstmt = null;
-            PreparedStatement ps = null;
-
-            //Date conversion
-            // Date date1 = new SimpleDateFormat("yyyy/mm/dd").parse(date);
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-            Date date1 = new Date();
-            java.sql.Date sqlStartDate = new java.sql.Date(date1.getTime());
-
-            //Inject a new Formstr template into the system
-            //  String insert = "INSERT INTO work (idwork, writer,date,description, guide, status) VALUES(?,?, ?,?,?,?);";
-
-            String query = "update work set description = ?, status = ? where idwork = '" +id +"'";
-
-            ps = c.prepareStatement(query);
-            ps.setString(1, desc);
-            ps.setString(2, status);
-            ps.execute();
+            int updated;
+            try (PreparedStatement ps = statementCache.prepare(c, UPDATE_SQL)) {
+                ps.setString(1, desc);
+                ps.setString(2, status);
+                itemIds.bind(ps, 3, id);
+                ps.setString(4, username);
+                updated = ps.executeUpdate();
+            }
+            if (updated == 0)
+                return null;
+            eventPublisher.publishEvent(new WorkItemsChangedEvent(username));
             return id;
         }
         catch (Exception e) {
@@ -56,49 +81,84 @@ public class InjectWorkService {
 
 
 
+    //Modify the description and status of several items of the user with one JDBC batch in one transaction.
+    //Each WorkItem carries the id, description and status. Returns for each id whether it was updated.
+    public Map<String, Boolean> modifySubmissions(List<WorkItem> changes, String username) throws SQLException
+    {
+        Map<String, Boolean> results = new LinkedHashMap<String, Boolean>();
+
+        Connection c = null;
+        try {
+            // Create a Connection object
+            c =  connectionHelper.getConnection();
+            c.setAutoCommit(false);
+
+            try {
+                int[] counts;
+                try (PreparedStatement ps = statementCache.prepare(c, UPDATE_SQL)) {
+                    for (WorkItem change : changes) {
+                        ps.setString(1, change.getDescription());
+                        ps.setString(2, change.getStatus());
+                        itemIds.bind(ps, 3, change.getId());
+                        ps.setString(4, username);
+                        ps.addBatch();
+                    }
+                    counts = ps.executeBatch();
+                }
+                c.commit();
+
+                //An id listed more than once is reported as updated if any of its changes matched
+                for (int i = 0; i < changes.size(); i++) {
+                    boolean updated = counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO;
+                    results.merge(changes.get(i).getId(), updated, Boolean::logicalOr);
+                }
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+
+            if (results.containsValue(Boolean.TRUE))
+                eventPublisher.publishEvent(new WorkItemsChangedEvent(username));
+            return results;
+        }
+        finally {
+            ConnectionHelper.close(c);
+        }
+    }
+
     //Inject a new submission
     public String injestNewSubmission(WorkItem item)
     {
         Connection c = null;
-        int rowCount= 0;
         try {
 
             // Create a Connection object
-            c =  ConnectionHelper.getConnection();
+            c =  connectionHelper.getConnection();
 
-            //Use prepared statements to protected against SQL injection attacks
-            //  PreparedStatement pstmt = null;
-            PreparedStatement ps = null;
-
-            //Convert rev to int
             String name = item.getName();
-            String date  = item.getDate();
             String guide = item.getGuide();
             String description = item.getDescription();
             String status = item.getStatus();
 
             //generate the work item ID
-            UUID uuid = UUID.randomUUID();
-            String workId = uuid.toString();
-
-            //Date conversion
-            // Date date1 = new SimpleDateFormat("yyyy/mm/dd").parse(date);
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-
-            Date date1 = dateFormat.parse(date);
-            java.sql.Date sqlStartDate = new java.sql.Date(date1.getTime());
-
-            //Inject a new Formstr template into the system
-            String insert = "INSERT INTO work (idwork, username,date,description, guide, status, archive) VALUES(?,?, ?,?,?,?,?);";
-            ps = c.prepareStatement(insert);
-            ps.setString(1, workId);
-            ps.setString(2, name);
-            ps.setDate(3, sqlStartDate);
-            ps.setString(4, description);
-            ps.setString(5, guide );
-            ps.setString(6, status );
-            ps.setBoolean(7, false);
-            ps.execute();
+            String workId = itemIds.newId();
+
+            java.sql.Date sqlStartDate = DateCodec.toSqlDate(item.getEpochDay());
+
+            //Use prepared statements to protected against SQL injection attacks
+            try (PreparedStatement ps = statementCache.prepare(c, INSERT_SQL)) {
+                itemIds.bind(ps, 1, workId);
+                ps.setString(2, name);
+                ps.setDate(3, sqlStartDate);
+                ps.setString(4, description);
+                ps.setString(5, guide );
+                ps.setString(6, status );
+                ps.setBoolean(7, false);
+                ps.execute();
+            }
+            eventPublisher.publishEvent(new WorkItemsChangedEvent(name));
             return workId;
         }
         catch (Exception e) {
@@ -110,5 +170,126 @@ public class InjectWorkService {
         return null;
     }
 
+    //Insert the records of an import stream for the user. Records are validated as they are read and
+    //collected into chunks of tracker.ingest.chunk-size rows. A connection is only borrowed once a chunk
+    //is complete, to insert it with one JDBC batch in its own transaction, so a slow client never holds one.
+    //Invalid records are skipped and a chunk the database rejects is rolled back; both are listed in the report
+    //and the import carries on with the next record.
+    public BulkIngestReport injestBulk(WorkItemReader reader, String username) throws SQLException
+    {
+        BulkIngestReport report = new BulkIngestReport(maxErrors);
+        List<WorkItem> chunk = new ArrayList<WorkItem>(chunkSize);
+        try {
+            boolean more = true;
+            while (more) {
+                chunk.clear();
+                int firstRecord = 0;
+                while (chunk.size() < chunkSize) {
+                    WorkItem item;
+                    try {
+                        item = reader.read();
+                    } catch (InvalidRecordException e) {
+                        report.recordRead();
+                        report.recordRejected(reader.getRecordNumber(), e.getMessage());
+                        continue;
+                    } catch (IOException e) {
+                        report.inputFailed(e.getMessage());
+                        more = false;
+                        break;
+                    }
+                    if (item == null) {
+                        more = false;
+                        break;
+                    }
+                    report.recordRead();
+
+                    try {
+                        validate(item);
+                    } catch (InvalidRecordException e) {
+                        report.recordRejected(reader.getRecordNumber(), e.getMessage());
+                        continue;
+                    }
+
+                    if (chunk.isEmpty())
+                        firstRecord = reader.getRecordNumber();
+                    chunk.add(item);
+                }
+
+                //Rows of a truncated stream are still inserted, the same as any other complete chunk
+                if (!chunk.isEmpty() && !insertChunk(chunk, username, firstRecord, reader.getRecordNumber(), report))
+                    more = false;
+            }
+        } finally {
+            if (report.getInserted() > 0)
+                eventPublisher.publishEvent(new WorkItemsChangedEvent(username));
+        }
+        return report;
+    }
+
+    //Insert and commit the rows of one chunk, or roll them back and record the failure.
+    //Returns false when no connection could be borrowed; the rest of the import is then abandoned,
+    //or, while nothing has been inserted and the client can simply retry, the error is thrown.
+    //A connection that fails to roll back is unusable, so that error ends the import.
+    private boolean insertChunk(List<WorkItem> chunk, String username, int firstRecord, int lastRecord,
+                                BulkIngestReport report) throws SQLException
+    {
+        Connection c = null;
+        try {
+            // Create a Connection object
+            try {
+                c =  connectionHelper.getConnection();
+            } catch (SQLException e) {
+                if (report.getInserted() == 0)
+                    throw e;
+                report.chunkFailed(firstRecord, lastRecord, chunk.size(), e.getMessage());
+                return false;
+            }
+            c.setAutoCommit(false);
+
+            try (PreparedStatement ps = statementCache.prepare(c, INSERT_SQL)) {
+                for (WorkItem item : chunk) {
+                    itemIds.bind(ps, 1, itemIds.newId());
+                    ps.setString(2, username);
+                    ps.setDate(3, DateCodec.toSqlDate(item.getEpochDay()));
+                    ps.setString(4, item.getDescription());
+                    ps.setString(5, item.getGuide());
+                    ps.setString(6, item.getStatus());
+                    ps.setBoolean(7, false);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.commit();
+                report.chunkCommitted(chunk.size());
+            } catch (SQLException e) {
+                c.rollback();
+                report.chunkFailed(firstRecord, lastRecord, chunk.size(), e.getMessage());
+            } finally {
+                c.setAutoCommit(true);
+            }
+            return true;
+        }
+        finally {
+            ConnectionHelper.close(c);
+        }
+    }
+
+    //Check a record against the work table
+    private static void validate(WorkItem item) throws InvalidRecordException
+    {
+        if (!item.hasDate())
+            throw new InvalidRecordException("date is required");
+        checkLength("description", item.getDescription(), MAX_DESCRIPTION);
+        checkLength("guide", item.getGuide(), MAX_GUIDE);
+        checkLength("status", item.getStatus(), MAX_STATUS);
+    }
+
+    private static void checkLength(String field, String value, int max) throws InvalidRecordException
+    {
+        if (value == null || value.isEmpty())
+            throw new InvalidRecordException(field + " is required");
+        if (value.length() > max)
+            throw new InvalidRecordException(field + " is longer than " + max + " characters");
+    }
+
 
 }
@@ -0,0 +1,9 @@
+package com.aws.jdbc;
+
+//Thrown for an import record that cannot be turned into a work item
+public class InvalidRecordException extends Exception {
+
+    public InvalidRecordException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,156 @@
+package com.aws.jdbc;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+//Bounded in-process cache shared by WorkItemCache and ItemResponseCache.
+//Entries are dropped when they are older than the TTL, when they are invalidated or when the least
+//recently used entry has to make room for another one. A value is computed outside the cache lock:
+//start() registers a Load before the value is read and the Load only stores it if the key was not
+//invalidated in the meantime, so a value read before a change is never cached after it.
+public class LruCache<K, V> {
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    //Least recently used entry first
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    //Loads in progress
+    private final Map<K, Load> pending = new HashMap<K, Load>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    //name prefixes the counters in toString
+    public LruCache(String name, int maxEntries, long ttlSeconds) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //Returns the cached value or null when it has to be computed
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && System.nanoTime() - entry.created > ttlNanos) {
+            entries.remove(key);
+            expirations.increment();
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    //Starts computing the value of a key; a newer load of the same key replaces this one
+    public synchronized Load start(K key) {
+        Load load = new Load(key);
+        pending.put(key, load);
+        return load;
+    }
+
+    //Drops the value of a key and cancels its load
+    public synchronized void invalidate(K key) {
+        if (entries.remove(key) != null)
+            invalidations.increment();
+        pending.remove(key);
+    }
+
+    //Drops the values of all matching keys and cancels their loads
+    public synchronized void invalidateIf(Predicate<K> matches) {
+        entries.keySet().removeIf(key -> {
+            if (!matches.test(key))
+                return false;
+            invalidations.increment();
+            return true;
+        });
+        pending.keySet().removeIf(matches);
+    }
+
+    private synchronized void complete(Load load, V value) {
+        if (pending.get(load.key) != load)
+            return;
+
+        pending.remove(load.key);
+        entries.put(load.key, new Entry<V>(value));
+    }
+
+    private synchronized void abandon(Load load) {
+        if (pending.get(load.key) == load)
+            pending.remove(load.key);
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : h / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%1$s.size=%2$d%n%1$s.hits=%3$d%n%1$s.misses=%4$d%n%1$s.hitRate=%5$.3f%n"
+                        + "%1$s.evictions=%6$d%n%1$s.expirations=%7$d%n%1$s.invalidations=%8$d%n",
+                name, getSize(), hits.sum(), misses.sum(), getHitRate(),
+                evictions.sum(), expirations.sum(), invalidations.sum());
+    }
+
+    //A value being computed for one key
+    public class Load {
+
+        private final K key;
+
+        private Load(K key) {
+            this.key = key;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        //Stores the value unless the key was invalidated since the load started
+        public void complete(V value) {
+            LruCache.this.complete(this, value);
+        }
+
+        //Gives up the load without storing anything
+        public void abandon() {
+            LruCache.this.abandon(this);
+        }
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long created = System.nanoTime();
+
+        private Entry(V value) {
+            this.value = value;
+        }
+    }
+}
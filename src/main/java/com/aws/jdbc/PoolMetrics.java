@@ -0,0 +1,101 @@
+package com.aws.jdbc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.springframework.stereotype.Component;
+
+//Collects connection pool statistics - active/idle connections and how long callers wait to borrow one
+@Component
+public class PoolMetrics implements MetricsTrackerFactory {
+
+    private volatile PoolStats poolStats;
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder borrowWaitNanos = new LongAdder();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder usageMillis = new LongAdder();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                borrowCount.increment();
+                borrowWaitNanos.add(elapsedAcquiredNanos);
+                maxBorrowWaitNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageMillis.add(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                borrowTimeouts.increment();
+            }
+        };
+    }
+
+    public int getActiveConnections() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getActiveConnections();
+    }
+
+    public int getIdleConnections() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getIdleConnections();
+    }
+
+    public int getTotalConnections() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getTotalConnections();
+    }
+
+    public int getPendingThreads() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getPendingThreads();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = borrowCount.sum();
+        if (count == 0)
+            return 0;
+        return borrowWaitNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxWaitMillis() {
+        return maxBorrowWaitNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.sum();
+    }
+
+    public double getAverageUsageMillis() {
+        long count = borrowCount.sum();
+        if (count == 0)
+            return 0;
+        return usageMillis.sum() / (double) count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("pool.active=%d%npool.idle=%d%npool.total=%d%npool.pending=%d%n"
+                        + "pool.borrows=%d%npool.wait.avg.ms=%.3f%npool.wait.max.ms=%.3f%npool.timeouts=%d%npool.usage.avg.ms=%.3f%n",
+                getActiveConnections(), getIdleConnections(), getTotalConnections(), getPendingThreads(),
+                getBorrowCount(), getAverageWaitMillis(), getMaxWaitMillis(), getBorrowTimeouts(), getAverageUsageMillis());
+    }
+}
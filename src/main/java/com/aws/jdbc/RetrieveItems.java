@@ -1,195 +1,178 @@
 package com.aws.jdbc;
 
-import java.io.StringWriter;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList ;
-import java.util.Date;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
-import com.aws.entities.WorkItem;
+import java.util.Map;
 
 import com.aws.entities.WorkItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.util.HashMap;
-import java.util.Map;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
 @Component
 public class RetrieveItems {
 
+    //Selects the date column as days since 1970-01-01
+    static final String EPOCH_DAY = "DATEDIFF(date, '1970-01-01')";
+
+    //Statement texts are fixed and every value is bound as a parameter,
+    //so each text is prepared once per pooled connection and reused
+    private static final String SELECT_ITEM_SQL = "Select description, status FROM work where idwork = ?";
+    private static final String SELECT_WORK_ITEM_SQL = "Select idwork,username," + EPOCH_DAY + ",description,guide,status FROM work where idwork = ?";
+    private static final String SELECT_ALL_ACTIVE_SQL = "Select idwork,username," + EPOCH_DAY + ",description,guide,status FROM work where archive = 0 order by username, date, idwork";
+    private static final String ARCHIVE_ITEM_SQL = "update work set archive = 1 where idwork = ? and username = ? and archive = 0";
+
+    private final ConnectionHelper connectionHelper;
+    private final StatementCache statementCache;
+    private final WorkItemCache itemCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final WorkItemIds itemIds;
+
+    //Number of rows MySQL sends per round trip when streaming item lists
+    private final int fetchSize;
+
+    public RetrieveItems(ConnectionHelper connectionHelper, StatementCache statementCache, WorkItemCache itemCache,
+                         ApplicationEventPublisher eventPublisher, WorkItemIds itemIds,
+                         @Value("${tracker.jdbc.fetch-size:500}") int fetchSize) {
+        this.connectionHelper = connectionHelper;
+        this.statementCache = statementCache;
+        this.itemCache = itemCache;
+        this.eventPublisher = eventPublisher;
+        this.itemIds = itemIds;
+        this.fetchSize = fetchSize;
+    }
 
-
-
-    //Retrieves an item based on the ID
-    public String FlipItemArchive(String id ) {
+    //Archives an active item of the user and returns it, or returns null when the user has no
+    //such active item. The update and the read of the archived row run in one transaction on one
+    //connection. The update only matches rows that are still active, so when the same item is archived
+    //concurrently exactly one caller gets it back.
+    //(MySQL has no UPDATE ... RETURNING, so the row is read back under the update's row lock.)
+    public WorkItem archiveItem(String id, String username) throws SQLException {
 
         Connection c = null;
-
-        //Define a list in which all work items are stored
-        String query = "";
-        String status="" ;
-        String description="";
-
         try {
             // Create a Connection object
-            c =  ConnectionHelper.getConnection();
-
-            ResultSet rs = null;
-            Statement s = c.createStatement();
-            Statement scount = c.createStatement();
-
-            //Use prepared statements to protected against SQL injection attacks
-            PreparedStatement pstmt = null;
-            PreparedStatement ps = null;
-
-            //Specify the SQL Statement to query data from, the empployee table
-            query = "update work set archive = ? where idwork ='" +id + "' ";
-
-            PreparedStatement updateForm = c.prepareStatement(query);
+            c =  connectionHelper.getConnection();
+            c.setAutoCommit(false);
+
+            WorkItem item = null;
+            try {
+                //Use prepared statements to protected against SQL injection attacks
+                int updated;
+                try (PreparedStatement update = statementCache.prepare(c, ARCHIVE_ITEM_SQL)) {
+                    itemIds.bind(update, 1, id);
+                    update.setString(2, username);
+                    updated = update.executeUpdate();
+                }
+
+                if (updated == 1) {
+                    try (PreparedStatement select = statementCache.prepare(c, SELECT_WORK_ITEM_SQL)) {
+                        itemIds.bind(select, 1, id);
+                        try (ResultSet rs = select.executeQuery()) {
+                            if (rs.next())
+                                item = mapItem(rs);
+                        }
+                    }
+                }
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
 
-            updateForm.setBoolean(1, true);
-            updateForm.execute();
+            if (item != null)
+                eventPublisher.publishEvent(new WorkItemsChangedEvent(username));
+            return item;
 
-        } catch (Exception e) {
-            e.printStackTrace();
         } finally {
             ConnectionHelper.close(c);
         }
-        return null;
     }
 
+    //Archives several active items of the user with one JDBC batch in one transaction.
+    //Returns for each id whether it was archived (false when the user has no such active item).
+    public Map<String, Boolean> archiveItems(Collection<String> ids, String username) throws SQLException {
 
-    // Retrieves archive data from the MySQL Database
-    public String getArchiveData(String username) {
+        Map<String, Boolean> results = new LinkedHashMap<String, Boolean>();
+        List<String> uniqueIds = new ArrayList<String>(new LinkedHashSet<String>(ids));
 
         Connection c = null;
-
-        //Define a list in which all work items are stored
-        List<WorkItem> itemList = new ArrayList<WorkItem>();
-        int rowCount = 0;
-        String query = "";
-        WorkItem item = null;
         try {
             // Create a Connection object
-            c =  ConnectionHelper.getConnection();
-
-            ResultSet rs = null;
-            Statement s = c.createStatement();
-            Statement scount = c.createStatement();
-
-            //Use prepared statements to protected against SQL injection attacks
-            PreparedStatement pstmt = null;
-            PreparedStatement ps = null;
-
-            //Specify the SQL Statement to query data from, the work table
-            int arch = 1;
-
-            //Specify the SQL Statement to query data from, the work table
-            query = "Select idwork,username,date,description,guide,status FROM work where username = '" +username +"' and archive = " +arch +"";
-            pstmt = c.prepareStatement(query);
-            rs = pstmt.executeQuery();
-
-            while (rs.next())
-            {
-                //For each employee record-- create an Employee instance
-                item = new WorkItem();
-
-                //Populate Employee object with data from MySQL
-                item.SetId(rs.getString(1));
-                item.SetName(rs.getString(2));
-                item.SetDate(rs.getDate(3).toString().trim());
-                item.SetDescription(rs.getString(4));
-                item.SetGuide(rs.getString(5));
-                item.SetStatus(rs.getString(6));
-
-                //Push the Employee Object to the list
-                itemList.add(item);
+            c =  connectionHelper.getConnection();
+            c.setAutoCommit(false);
+
+            try {
+                int[] counts;
+                try (PreparedStatement update = statementCache.prepare(c, ARCHIVE_ITEM_SQL)) {
+                    for (String id : uniqueIds) {
+                        itemIds.bind(update, 1, id);
+                        update.setString(2, username);
+                        update.addBatch();
+                    }
+                    counts = update.executeBatch();
+                }
+                c.commit();
+
+                for (int i = 0; i < uniqueIds.size(); i++)
+                    results.put(uniqueIds.get(i), counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO);
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
             }
 
-            return convertToString(toXml(itemList));
-
+            if (results.containsValue(Boolean.TRUE))
+                eventPublisher.publishEvent(new WorkItemsChangedEvent(username));
+            return results;
 
-        } catch (Exception e) {
-            e.printStackTrace();
         } finally {
             ConnectionHelper.close(c);
         }
-        return null;
-
     }
 
-    //Retrieve an item based on an ID and return a WorkItem
-    //Retrieves an item based on the ID
-    public WorkItem GetWorkItembyId(String id ) {
+    //Retrieves the description and status of an item based on the ID
+    public WorkItem GetItemSQL(String id ) {
 
         Connection c = null;
 
-        //Define a list in which all work items are stored
-        String query = "";
         String status="" ;
         String description="";
-        String writer ="";
-        String guide ="";
-        Date mydate ;
-        String mydate2="";
 
         try {
             // Create a Connection object
-            c =  ConnectionHelper.getConnection();
-
-            ResultSet rs = null;
-            Statement s = c.createStatement();
-            Statement scount = c.createStatement();
+            c =  connectionHelper.getConnection();
 
             //Use prepared statements to protected against SQL injection attacks
-            PreparedStatement pstmt = null;
-            PreparedStatement ps = null;
-
-            //Specify the SQL Statement to query data from, the empployee table
-            query = "Select * FROM work where idwork ='" +id + "' ";
-            pstmt = c.prepareStatement(query);
-            rs = pstmt.executeQuery();
-
-            WorkItem theWork = new WorkItem();
-            while (rs.next())
-            {
-                writer = rs.getString(2);
-                mydate = rs.getDate(3);
-                description =rs.getString(4);
-                guide = rs.getString(5);
-                status = rs.getString(6);
-
-                mydate2 = mydate.toString();
-                theWork.SetId(id);
-                theWork.SetDate(mydate2);
-                theWork.SetName(writer);
-                theWork.SetDescription(description);
-                theWork.SetStatus(status);
-                theWork.SetGuide(guide);
+            try (PreparedStatement pstmt = statementCache.prepare(c, SELECT_ITEM_SQL)) {
+                itemIds.bind(pstmt, 1, id);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next())
+                    {
+                        description = rs.getString(1);
+                        status = rs.getString(2);
+                    }
+                }
             }
 
-            //Now that we have the Item - delete the record
-            //Specify the SQL Statement to query data from, the empployee table
-            query = "Delete FROM work where idwork ='" +id + "' ";
-            pstmt = c.prepareStatement(query);
-            pstmt.executeUpdate();
-
-
-            return theWork;
+            return WorkItem.builder()
+                    .id(id)
+                    .description(description)
+                    .status(status)
+                    .build();
 
 
         } catch (Exception e) {
@@ -200,284 +183,117 @@ public class RetrieveItems {
         return null;
     }
 
-    //Retrieves an item based on the ID
-    public String GetItemSQL(String id ) {
-
-        Connection c = null;
+    //Streams the active (archived = false) or archived items of a user to the handler as rows are read.
+    //Returns the number of items passed to the handler.
+    public int streamItems(String username, boolean archived, WorkItemHandler handler) throws SQLException, IOException {
+        return streamItems(new WorkItemQuery(username, archived), handler);
+    }
 
-        //Define a list in which all work items are stored
-        String query = "";
-        String status="" ;
-        String description="";
+    //Streams the items matching the query to the handler as rows are read.
+    //Complete item lists are served from and added to the WorkItemCache.
+    //Returns the number of items passed to the handler.
+    public int streamItems(WorkItemQuery query, WorkItemHandler handler) throws SQLException, IOException {
+        if (!query.isUnfiltered())
+            return queryItems(query.toSql(), ps -> query.bind(ps, itemIds), handler);
+
+        List<WorkItem> cached = itemCache.get(query.getUsername(), query.isArchived());
+        if (cached != null) {
+            for (WorkItem item : cached)
+                handler.handle(item);
+            return cached.size();
+        }
 
+        WorkItemCache.Load load = itemCache.startLoad(query.getUsername(), query.isArchived());
+        boolean loaded = false;
         try {
-            // Create a Connection object
-            c =  ConnectionHelper.getConnection();
-
-            ResultSet rs = null;
-            Statement s = c.createStatement();
-            Statement scount = c.createStatement();
-
-            //Use prepared statements to protected against SQL injection attacks
-            PreparedStatement pstmt = null;
-            PreparedStatement ps = null;
-
-            //Specify the SQL Statement to query data from, the empployee table
-            query = "Select description, status FROM work where idwork ='" +id + "' ";
-            pstmt = c.prepareStatement(query);
-            rs = pstmt.executeQuery();
-
-            while (rs.next())
-            {
-                description = rs.getString(1);
-                status = rs.getString(2);
-            }
-            return convertToString(toXmlItem(id,description,status));
-
-
-        } catch (Exception e) {
-            e.printStackTrace();
+            int rowCount = queryItems(query.toSql(), ps -> query.bind(ps, itemIds), item -> {
+                load.add(item);
+                handler.handle(item);
+            });
+            loaded = true;
+            return rowCount;
         } finally {
-            ConnectionHelper.close(c);
+            if (loaded)
+                load.complete();
+            else
+                load.abandon();
         }
-        return null;
     }
 
-    //Get Items Data from MySQL
-    public List<WorkItem> getItemsDataSQLReport(String username) {
-
-        Connection c = null;
-
-        //Define a list in which all work items are stored
-        List<WorkItem> itemList = new ArrayList<WorkItem>();
-        int rowCount = 0;
-        String query = "";
-        WorkItem item = null;
-        try {
-            // Create a Connection object
-            c =  ConnectionHelper.getConnection();
-
-            ResultSet rs = null;
-            Statement s = c.createStatement();
-            Statement scount = c.createStatement();
-
-            //Use prepared statements to protected against SQL injection attacks
-            PreparedStatement pstmt = null;
-            PreparedStatement ps = null;
-
-            int arch = 0;
-
-            //Specify the SQL Statement to query data from, the work table
-            query = "Select idwork,username,date,description,guide,status FROM work where username = '" +username +"' and archive = " +arch +"";
-            pstmt = c.prepareStatement(query);
-            rs = pstmt.executeQuery();
-
-            while (rs.next())
-            {
-                //For each employee record-- create an Employee instance
-                item = new WorkItem();
-
-                //Populate Employee object with data from MySQL
-                item.SetId(rs.getString(1));
-                item.SetName(rs.getString(2));
-                item.SetDate(rs.getDate(3).toString().trim());
-                item.SetDescription(rs.getString(4));
-                item.SetGuide(rs.getString(5));
-                item.SetStatus(rs.getString(6));
-
-                //Push the Employee Object to the list
-                itemList.add(item);
-            }
-
-            return itemList;
-
+    //Streams the active items of every user to the handler with one query, grouped by username and in
+    //date order within a user. archive = 0 is constant, so work_username_archive_date provides the order.
+    //Used by the scheduled reports; the per-user cache is bypassed.
+    //Returns the number of items passed to the handler.
+    public int streamAllActiveItems(WorkItemHandler handler) throws SQLException, IOException {
+        return queryItems(SELECT_ALL_ACTIVE_SQL, ps -> { }, handler);
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            ConnectionHelper.close(c);
+    //Reads one page of at most pageSize items. One extra row is requested to find out
+    //whether another page follows.
+    public WorkItemPage getItemsPage(WorkItemQuery query, int pageSize) throws SQLException, IOException {
+        List<WorkItem> items = new ArrayList<WorkItem>(pageSize + 1);
+        query.setLimit(pageSize + 1);
+        streamItems(query, items::add);
+
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items.remove(pageSize);
+            nextCursor = WorkItemQuery.cursorOf(items.get(pageSize - 1));
         }
-        return null;
+        return new WorkItemPage(items, nextCursor);
     }
 
-
-    //Get Items Data from MySQL
-    public String getItemsDataSQL(String username) {
+    //Runs a query that selects idwork,username,epoch day,description,guide,status and maps each row to a WorkItem.
+    //Rows are fetched from MySQL in batches of fetchSize through a server-side cursor
+    //(useCursorFetch in spring.datasource.url), so memory use does not grow with the row count.
+    private int queryItems(String sql, StatementBinder binder, WorkItemHandler handler) throws SQLException, IOException {
 
         Connection c = null;
-
-        //Define a list in which all work items are stored
-        List<WorkItem> itemList = new ArrayList<WorkItem>();
         int rowCount = 0;
-        String query = "";
-        WorkItem item = null;
         try {
             // Create a Connection object
-            c =  ConnectionHelper.getConnection();
-
-            ResultSet rs = null;
-            Statement s = c.createStatement();
-            Statement scount = c.createStatement();
+            c =  connectionHelper.getConnection();
 
             //Use prepared statements to protected against SQL injection attacks
-            PreparedStatement pstmt = null;
-            PreparedStatement ps = null;
-
-            int arch = 0;
-
-            //Specify the SQL Statement to query data from, the work table
-            query = "Select idwork,username,date,description,guide,status FROM work where username = '" +username +"' and archive = " +arch +"";
-            pstmt = c.prepareStatement(query);
-            rs = pstmt.executeQuery();
-
-            while (rs.next())
-            {
-                //For each employee record-- create an Employee instance
-                item = new WorkItem();
-
-                //Populate Employee object with data from MySQL
-                item.SetId(rs.getString(1));
-                item.SetName(rs.getString(2));
-                item.SetDate(rs.getDate(3).toString().trim());
-                item.SetDescription(rs.getString(4));
-                item.SetGuide(rs.getString(5));
-                item.SetStatus(rs.getString(6));
-
-                //Push the Employee Object to the list
-                itemList.add(item);
+            try (PreparedStatement pstmt = statementCache.prepare(c, sql)) {
+                binder.bind(pstmt);
+                pstmt.setFetchSize(fetchSize);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next())
+                    {
+                        handler.handle(mapItem(rs));
+                        rowCount++;
+                    }
+                }
             }
+            return rowCount;
 
-            return convertToString(toXml(itemList));
-
-
-        } catch (Exception e) {
-            e.printStackTrace();
         } finally {
             ConnectionHelper.close(c);
         }
-        return null;
     }
 
-    //Convert Work item data retrieved from MySQL
-    //into an XML schema to pass back to client
-    private Document toXml(List<WorkItem> itemList) {
-        try
-        {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.newDocument();
-
-            //Start building the XML to pass back to the AEM client
-            Element root = doc.createElement( "Items" );
-            doc.appendChild( root );
-
-            //Get the elements from the collection
-            int custCount = itemList.size();
-
-            //Iterate through the collection to build up the DOM
-            for ( int index=0; index < custCount; index++) {
-
-                //Get the Employee object from the collection
-                WorkItem myItem = (WorkItem)itemList.get(index);
-
-                Element Item = doc.createElement( "Item" );
-                root.appendChild( Item );
-
-                //Add rest of data as child elements
-                //Set Id
-                Element id = doc.createElement( "Id" );
-                id.appendChild( doc.createTextNode(myItem.getId() ) );
-                Item.appendChild( id );
-
-                //Set Name
-                Element name = doc.createElement( "Name" );
-                name.appendChild( doc.createTextNode(myItem.getName() ) );
-                Item.appendChild( name );
-
-                //Set Date
-                Element date = doc.createElement( "Date" );
-                date.appendChild( doc.createTextNode(myItem.getDate() ) );
-                Item.appendChild( date );
-
-                //Set Description
-                Element desc = doc.createElement( "Description" );
-                desc.appendChild( doc.createTextNode(myItem.getDescription() ) );
-                Item.appendChild( desc );
-
-                //Set Guide
-                Element guide = doc.createElement( "Guide" );
-                guide.appendChild( doc.createTextNode(myItem.getGuide() ) );
-                Item.appendChild( guide );
-
-                //Set Status
-                Element status = doc.createElement( "Status" );
-                status.appendChild( doc.createTextNode(myItem.getStatus() ) );
-                Item.appendChild( status );
-            }
-
-            return doc;
-        }
-        catch(Exception e)
-        {
-            e.printStackTrace();
-        }
-        return null;
+    //Populate a WorkItem object with the current row. The date column is selected as
+    //DATEDIFF(date, '1970-01-01'), the epoch day WorkItem keeps, so no Date or String is made for it.
+    //A NULL date is read as 0 by getInt, so wasNull keeps it from becoming 1970-01-01.
+    private WorkItem mapItem(ResultSet rs) throws SQLException {
+        WorkItem.Builder builder = WorkItem.builder()
+                .id(itemIds.read(rs, 1))
+                .name(rs.getString(2));
+        int epochDay = rs.getInt(3);
+        if (!rs.wasNull())
+            builder.epochDay(epochDay);
+        return builder
+                .description(rs.getString(4))
+                .guide(rs.getString(5))
+                .status(rs.getString(6))
+                .build();
     }
 
-    private String convertToString(Document xml)
-    {
-        try {
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            StreamResult result = new StreamResult(new StringWriter());
-            DOMSource source = new DOMSource(xml);
-            transformer.transform(source, result);
-            return result.getWriter().toString();
-        } catch(Exception ex) {
-            ex.printStackTrace();
-        }
-        return null;
+    //Sets the parameters of a prepared query
+    private interface StatementBinder {
+        void bind(PreparedStatement ps) throws SQLException;
     }
 
-
-    //Convert Work item data retrieved from MySQL
-    //into an XML schema to pass back to client
-    private Document toXmlItem(String id2, String desc2, String status2) {
-        try
-        {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.newDocument();
-
-            //Start building the XML to pass back to the AEM client
-            Element root = doc.createElement( "Items" );
-            doc.appendChild( root );
-
-            Element Item = doc.createElement( "Item" );
-            root.appendChild( Item );
-
-            //Set Id
-            Element id = doc.createElement( "Id" );
-            id.appendChild( doc.createTextNode(id2 ) );
-            Item.appendChild( id );
-
-            //Set Description
-            Element desc = doc.createElement( "Description" );
-            desc.appendChild( doc.createTextNode(desc2 ) );
-            Item.appendChild( desc );
-
-            //Set Status
-            Element status = doc.createElement( "Status" );
-            status.appendChild( doc.createTextNode(status2 ) );
-            Item.appendChild( status );
-
-            return doc;
-        }
-        catch(Exception e)
-        {
-            e.printStackTrace();
-        }
-        return null;
-    }
-
-
 }
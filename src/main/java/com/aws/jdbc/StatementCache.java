@@ -0,0 +1,73 @@
+package com.aws.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+//Prepares the fixed SQL texts used by the jdbc classes.
+//The MySQL driver keeps closed PreparedStatements in a per-connection cache (cachePrepStmts and
+//useServerPrepStmts in spring.datasource.url), so a statement text is parsed by the server once per
+//pooled connection. This class tracks which texts each physical connection has already prepared
+//and counts how often a text is used for the first time on its connection and how often again.
+//These counts are not the driver's cache hit rate: the driver's cache is bounded (prepStmtCacheSize)
+//and may have evicted a statement this class counts as reused.
+@Component
+public class StatementCache {
+
+    //Physical connection -> statement texts prepared on it. Entries go away when the pool retires the connection.
+    private final Map<Connection, Set<String>> prepared = Collections.synchronizedMap(new WeakHashMap<Connection, Set<String>>());
+
+    private final LongAdder firstUses = new LongAdder();
+    private final LongAdder reuses = new LongAdder();
+
+    public PreparedStatement prepare(Connection c, String sql) throws SQLException {
+        Connection physical = c.isWrapperFor(Connection.class) ? c.unwrap(Connection.class) : c;
+
+        Set<String> texts;
+        synchronized (prepared) {
+            texts = prepared.get(physical);
+            if (texts == null) {
+                texts = Collections.synchronizedSet(new HashSet<String>());
+                prepared.put(physical, texts);
+            }
+        }
+
+        if (texts.add(sql))
+            firstUses.increment();
+        else
+            reuses.increment();
+
+        return c.prepareStatement(sql);
+    }
+
+    //Statements prepared with a text not used before on the same connection
+    public long getFirstUses() {
+        return firstUses.sum();
+    }
+
+    //Statements prepared with a text already used on the same connection
+    public long getReuses() {
+        return reuses.sum();
+    }
+
+    public double getReuseRate() {
+        long r = reuses.sum();
+        long total = r + firstUses.sum();
+        return total == 0 ? 0 : r / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("statements.firstUsePerConnection=%d%nstatements.reusedPerConnection=%d%n"
+                        + "statements.reuseRate=%.3f%n",
+                getFirstUses(), getReuses(), getReuseRate());
+    }
+}
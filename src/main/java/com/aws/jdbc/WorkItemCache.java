@@ -0,0 +1,125 @@
+package com.aws.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.aws.entities.WorkItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+//In-process cache of the full active and archived item lists of each user.
+//Lists are added while they are streamed from MySQL and dropped when a WorkItemsChangedEvent
+//is published for the user, when they are older than the TTL or when the least recently
+//used list has to make room for another one.
+@Component
+public class WorkItemCache {
+
+    private final LruCache<Key, List<WorkItem>> lists;
+    private final int maxItemsPerEntry;
+
+    public WorkItemCache(@Value("${tracker.cache.max-entries:1000}") int maxEntries,
+                         @Value("${tracker.cache.ttl-seconds:300}") long ttlSeconds,
+                         @Value("${tracker.cache.max-items-per-entry:5000}") int maxItemsPerEntry) {
+        this.lists = new LruCache<Key, List<WorkItem>>("itemCache", maxEntries, ttlSeconds);
+        this.maxItemsPerEntry = maxItemsPerEntry;
+    }
+
+    //Returns the cached list or null when it has to be read from the database
+    public List<WorkItem> get(String username, boolean archived) {
+        return lists.get(new Key(username, archived));
+    }
+
+    //Starts collecting a list that is being read from the database
+    public Load startLoad(String username, boolean archived) {
+        return new Load(lists.start(new Key(username, archived)));
+    }
+
+    //Drops the lists of a user
+    public void invalidate(String username) {
+        lists.invalidate(new Key(username, false));
+        lists.invalidate(new Key(username, true));
+    }
+
+    @EventListener
+    @Order(WorkItemsChangedEvent.ITEMS_ORDER)
+    public void onItemsChanged(WorkItemsChangedEvent event) {
+        invalidate(event.getUsername());
+    }
+
+    public int getSize() {
+        return lists.getSize();
+    }
+
+    public double getHitRate() {
+        return lists.getHitRate();
+    }
+
+    @Override
+    public String toString() {
+        return lists.toString();
+    }
+
+    //Collects the items of one list while it is streamed from the database.
+    //Lists longer than maxItemsPerEntry are not cached.
+    public class Load {
+
+        private final LruCache<Key, List<WorkItem>>.Load load;
+        private final List<WorkItem> items = new ArrayList<WorkItem>();
+        private boolean overflow;
+
+        private Load(LruCache<Key, List<WorkItem>>.Load load) {
+            this.load = load;
+        }
+
+        public void add(WorkItem item) {
+            if (overflow)
+                return;
+            if (items.size() >= maxItemsPerEntry) {
+                overflow = true;
+                items.clear();
+                return;
+            }
+            items.add(item);
+        }
+
+        //Stores the list unless the user's items changed while it was read
+        public void complete() {
+            if (overflow)
+                load.abandon();
+            else
+                load.complete(Collections.unmodifiableList(items));
+        }
+
+        //Discards the list after a failed read
+        public void abandon() {
+            load.abandon();
+        }
+    }
+
+    private static class Key {
+
+        private final String username;
+        private final boolean archived;
+
+        private Key(String username, boolean archived) {
+            this.username = username;
+            this.archived = archived;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return archived == other.archived && username.equals(other.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return username.hashCode() * 31 + (archived ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.aws.jdbc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aws.entities.WorkItem;
+
+//Reads work items from CSV. The first record is a header naming the columns
+//date, description, guide and status in any order; other columns are ignored.
+//Fields may be quoted with double quotes, and quoted fields can contain commas, quotes ("") and line breaks.
+public class WorkItemCsvReader implements WorkItemReader {
+
+    private final Reader in;
+    private final StringBuilder field = new StringBuilder();
+    private int dateColumn = -1;
+    private int descriptionColumn = -1;
+    private int guideColumn = -1;
+    private int statusColumn = -1;
+    private int columnCount;
+    private int recordNumber;
+    private int pushedBack = -2;
+
+    //The reader should be buffered
+    public WorkItemCsvReader(Reader in) throws IOException, InvalidRecordException {
+        this.in = in;
+        readHeader();
+    }
+
+    @Override
+    public WorkItem read() throws IOException, InvalidRecordException {
+        List<String> fields;
+        try {
+            fields = readRecord();
+            while (fields != null && fields.size() == 1 && fields.get(0).isEmpty())
+                fields = readRecord();
+        } catch (InvalidRecordException e) {
+            //Only a record that was started can be malformed, so it counts as the next record
+            recordNumber++;
+            throw e;
+        }
+        if (fields == null)
+            return null;
+
+        recordNumber++;
+        if (fields.size() < columnCount)
+            throw new InvalidRecordException("expected " + columnCount + " fields but found " + fields.size());
+
+        return WorkItem.builder()
+                .epochDay(WorkItemReader.parseDate(fields.get(dateColumn)))
+                .description(fields.get(descriptionColumn))
+                .guide(fields.get(guideColumn))
+                .status(fields.get(statusColumn))
+                .build();
+    }
+
+    @Override
+    public int getRecordNumber() {
+        return recordNumber;
+    }
+
+    private void readHeader() throws IOException, InvalidRecordException {
+        List<String> header = readRecord();
+        if (header == null)
+            throw new InvalidRecordException("missing header");
+
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim().toLowerCase();
+            if (name.equals("date"))
+                dateColumn = i;
+            else if (name.equals("description"))
+                descriptionColumn = i;
+            else if (name.equals("guide"))
+                guideColumn = i;
+            else if (name.equals("status"))
+                statusColumn = i;
+        }
+
+        if (dateColumn < 0 || descriptionColumn < 0 || guideColumn < 0 || statusColumn < 0)
+            throw new InvalidRecordException("header must name the columns date, description, guide and status");
+        columnCount = Math.max(Math.max(dateColumn, descriptionColumn), Math.max(guideColumn, statusColumn)) + 1;
+    }
+
+    //Returns the fields of the next record or null at the end of the input
+    private List<String> readRecord() throws IOException, InvalidRecordException {
+        int ch = next();
+        if (ch < 0)
+            return null;
+
+        List<String> fields = new ArrayList<String>();
+        field.setLength(0);
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (ch < 0)
+                    throw new InvalidRecordException("unterminated quoted field");
+                if (ch == '"') {
+                    int following = next();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        ch = following;
+                        continue;
+                    }
+                } else {
+                    field.append((char) ch);
+                }
+            } else if (ch == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (ch == '\n' || ch == '\r' || ch < 0) {
+                if (ch == '\r') {
+                    int following = next();
+                    if (following != '\n')
+                        pushedBack = following;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) ch);
+            }
+            ch = next();
+        }
+    }
+
+    private int next() throws IOException {
+        if (pushedBack != -2) {
+            int ch = pushedBack;
+            pushedBack = -2;
+            return ch;
+        }
+        return in.read();
+    }
+}
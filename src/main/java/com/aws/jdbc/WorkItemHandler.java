@@ -0,0 +1,12 @@
+package com.aws.jdbc;
+
+import java.io.IOException;
+
+import com.aws.entities.WorkItem;
+
+//Receives work items one at a time while the query result is being read,
+//so callers can serialize or export rows without holding the whole list
+public interface WorkItemHandler {
+
+    void handle(WorkItem item) throws IOException;
+}
@@ -0,0 +1,82 @@
+package com.aws.jdbc;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+//Creates work item ids and converts them to and from the idwork column.
+//New ids are version 7 UUIDs (RFC 9562): 48 bits of Unix milliseconds and a 12 bit sequence, then
+//62 random bits. They increase with time, so inserts go to the right edge of the primary key
+//instead of splitting random pages of it, and within one process every id is larger than the last.
+//Ids are always handled as canonical UUID strings; with tracker.ids.storage=binary the column is
+//BINARY(16) (see db/work-binary-ids.sql) and the strings are converted when bound and read.
+@Component
+public class WorkItemIds {
+
+    private static final byte[] NO_MATCH = new byte[0];
+
+    private final boolean binary;
+
+    //Milliseconds << 12 | sequence of the last id. It only moves forward, also when the clock
+    //goes back or more than 4096 ids are made in one millisecond.
+    private final AtomicLong last = new AtomicLong();
+
+    public WorkItemIds(@Value("${tracker.ids.storage:text}") String storage) {
+        if (storage.equalsIgnoreCase("binary"))
+            this.binary = true;
+        else if (storage.equalsIgnoreCase("text"))
+            this.binary = false;
+        else
+            throw new IllegalArgumentException("tracker.ids.storage must be text or binary, not " + storage);
+    }
+
+    public String newId() {
+        long now = System.currentTimeMillis() << 12;
+        long stamp = last.accumulateAndGet(now, (previous, current) -> current > previous ? current : previous + 1);
+
+        long msb = (stamp >>> 12) << 16 | 0x7000L | (stamp & 0xFFFL);
+        long lsb = ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(msb, lsb).toString();
+    }
+
+    //Binds an id parameter. A malformed id is bound so that it matches no row.
+    public void bind(PreparedStatement ps, int index, String id) throws SQLException {
+        if (binary)
+            ps.setBytes(index, toBytes(id));
+        else
+            ps.setString(index, id);
+    }
+
+    public String read(ResultSet rs, int column) throws SQLException {
+        if (!binary)
+            return rs.getString(column);
+
+        byte[] bytes = rs.getBytes(column);
+        if (bytes == null || bytes.length != 16)
+            return null;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+
+    private static byte[] toBytes(String id) {
+        if (id == null || id.length() != 36)
+            return NO_MATCH;
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return NO_MATCH;
+        }
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
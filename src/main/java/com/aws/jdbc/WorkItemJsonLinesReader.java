@@ -0,0 +1,63 @@
+package com.aws.jdbc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+import com.aws.entities.WorkItem;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//Reads work items from JSON lines - one object with date, description, guide and status per line.
+//Blank lines are skipped.
+public class WorkItemJsonLinesReader implements WorkItemReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final BufferedReader in;
+    private int recordNumber;
+
+    public WorkItemJsonLinesReader(BufferedReader in) {
+        this.in = in;
+    }
+
+    @Override
+    public WorkItem read() throws IOException, InvalidRecordException {
+        String line = in.readLine();
+        while (line != null && line.trim().isEmpty())
+            line = in.readLine();
+        if (line == null)
+            return null;
+
+        recordNumber++;
+        JsonNode node;
+        try {
+            node = MAPPER.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new InvalidRecordException("invalid JSON: " + e.getOriginalMessage());
+        }
+        if (node == null || !node.isObject())
+            throw new InvalidRecordException("expected a JSON object");
+
+        return WorkItem.builder()
+                .epochDay(WorkItemReader.parseDate(text(node, "date")))
+                .description(text(node, "description"))
+                .guide(text(node, "guide"))
+                .status(text(node, "status"))
+                .build();
+    }
+
+    @Override
+    public int getRecordNumber() {
+        return recordNumber;
+    }
+
+    private static String text(JsonNode node, String field) throws InvalidRecordException {
+        JsonNode value = node.path(field);
+        if (value.isMissingNode() || value.isNull())
+            return null;
+        if (!value.isTextual())
+            throw new InvalidRecordException(field + " must be a string");
+        return value.textValue();
+    }
+}
@@ -0,0 +1,128 @@
+package com.aws.jdbc;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.aws.entities.WorkItem;
+
+//Writes work items as a JSON array straight to an output stream, for example
+//[{"id":"...","name":"...","date":"2020-01-31","description":"...","guide":"...","status":"..."}]
+//The fields are written directly from the getters - no reflection or intermediate tree.
+public class WorkItemJsonWriter implements WorkItemWriter {
+
+    public static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private boolean hasItems;
+
+    public WorkItemJsonWriter(OutputStream os) {
+        this.out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 8192);
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public void start() throws IOException {
+        out.write('[');
+    }
+
+    @Override
+    public void handle(WorkItem item) throws IOException {
+        openItem();
+        writeField("id", item.getId(), true);
+        writeField("name", item.getName(), false);
+        writeField("date", item.getDate(), false);
+        writeField("description", item.getDescription(), false);
+        writeField("guide", item.getGuide(), false);
+        writeField("status", item.getStatus(), false);
+        out.write('}');
+    }
+
+    @Override
+    public void writeItemSummary(String id, String description, String status) throws IOException {
+        openItem();
+        writeField("id", id, true);
+        writeField("description", description, false);
+        writeField("status", status, false);
+        out.write('}');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.write(']');
+        out.flush();
+    }
+
+    private void openItem() throws IOException {
+        if (hasItems)
+            out.write(',');
+        hasItems = true;
+        out.write('{');
+    }
+
+    private void writeField(String name, String value, boolean first) throws IOException {
+        if (!first)
+            out.write(',');
+        out.write('"');
+        out.write(name);
+        out.write("\":");
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        writeEscaped(out, value);
+        out.write('"');
+    }
+
+    //Escapes quotes, backslashes and control characters. U+2028 and U+2029 are escaped as well
+    //so the output is also safe to evaluate as JavaScript.
+    public static void writeEscaped(Writer out, String text) throws IOException {
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            if (ch >= 0x20 && ch != '"' && ch != '\\' && ch != 0x2028 && ch != 0x2029)
+                continue;
+
+            if (i > start)
+                out.write(text, start, i - start);
+            start = i + 1;
+
+            switch (ch) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    out.write("\\u");
+                    out.write(HEX[(ch >> 12) & 0xF]);
+                    out.write(HEX[(ch >> 8) & 0xF]);
+                    out.write(HEX[(ch >> 4) & 0xF]);
+                    out.write(HEX[ch & 0xF]);
+            }
+        }
+        if (start < length)
+            out.write(text, start, length - start);
+    }
+}
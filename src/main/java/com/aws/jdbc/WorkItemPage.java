@@ -0,0 +1,25 @@
+package com.aws.jdbc;
+
+import java.util.List;
+
+import com.aws.entities.WorkItem;
+
+//One page of work items and the cursor for the next page (null on the last page)
+public class WorkItemPage {
+
+    private final List<WorkItem> items;
+    private final String nextCursor;
+
+    public WorkItemPage(List<WorkItem> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<WorkItem> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
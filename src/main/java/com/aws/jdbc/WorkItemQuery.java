@@ -0,0 +1,133 @@
+package com.aws.jdbc;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.format.DateTimeParseException;
+
+import com.aws.entities.DateCodec;
+import com.aws.entities.WorkItem;
+
+//Describes which work items of a user to read: optional status and guide filters, sort order,
+//a keyset cursor (date + idwork of the last item already seen) and a row limit.
+//The SQL is assembled from fixed fragments with every value bound as a parameter, so there is only a
+//small set of distinct statement texts and each one is served by the work(username, archive, date) index.
+public class WorkItemQuery {
+
+    private static final String SELECT_ITEMS_SQL = "Select idwork,username," + RetrieveItems.EPOCH_DAY + ",description,guide,status FROM work where username = ? and archive = ?";
+
+    private final String username;
+    private final boolean archived;
+
+    private String status;
+    private String guide;
+    private boolean ordered;
+    private boolean descending;
+    private Date afterDate;
+    private String afterId;
+    private int limit;
+
+    public WorkItemQuery(String username, boolean archived) {
+        this.username = username;
+        this.archived = archived;
+    }
+
+    //Only return items with this status (null for any)
+    public void setStatus(String status) {
+        this.status = emptyToNull(status);
+    }
+
+    //Only return items for this guide (null for any)
+    public void setGuide(String guide) {
+        this.guide = emptyToNull(guide);
+    }
+
+    //Sort by date and idwork, newest first when descending is true
+    public void setDescending(boolean descending) {
+        this.ordered = true;
+        this.descending = descending;
+    }
+
+    //Continue after the item identified by a cursor returned from cursorOf
+    public void setCursor(String cursor) {
+        int separator = cursor.indexOf(':');
+        if (separator < 0)
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+
+        try {
+            this.afterDate = DateCodec.toSqlDate(DateCodec.parseEpochDay(cursor.substring(0, separator)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        this.afterId = cursor.substring(separator + 1);
+        this.ordered = true;
+    }
+
+    //Return at most limit rows (0 for no limit)
+    public void setLimit(int limit) {
+        this.limit = limit;
+        if (limit > 0)
+            this.ordered = true;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean isArchived() {
+        return archived;
+    }
+
+    //True when the query reads the complete, unsorted list of the user
+    public boolean isUnfiltered() {
+        return status == null && guide == null && !ordered && afterDate == null && limit == 0;
+    }
+
+    //Builds the cursor that continues after the given item
+    public static String cursorOf(WorkItem item) {
+        return item.getDate() + ":" + item.getId();
+    }
+
+    String toSql() {
+        StringBuilder sql = new StringBuilder(SELECT_ITEMS_SQL);
+        if (status != null)
+            sql.append(" and status = ?");
+        if (guide != null)
+            sql.append(" and guide = ?");
+
+        //Written as a range on date plus a tie-break on idwork so MySQL can seek in the index
+        if (afterDate != null) {
+            if (descending)
+                sql.append(" and date <= ? and (date < ? or idwork < ?)");
+            else
+                sql.append(" and date >= ? and (date > ? or idwork > ?)");
+        }
+
+        if (ordered)
+            sql.append(descending ? " order by date desc, idwork desc" : " order by date, idwork");
+        if (limit > 0)
+            sql.append(" limit ?");
+        return sql.toString();
+    }
+
+    void bind(PreparedStatement ps, WorkItemIds itemIds) throws SQLException {
+        int index = 1;
+        ps.setString(index++, username);
+        ps.setBoolean(index++, archived);
+        if (status != null)
+            ps.setString(index++, status);
+        if (guide != null)
+            ps.setString(index++, guide);
+        if (afterDate != null) {
+            ps.setDate(index++, afterDate);
+            ps.setDate(index++, afterDate);
+            itemIds.bind(ps, index++, afterId);
+        }
+        if (limit > 0)
+            ps.setInt(index, limit);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
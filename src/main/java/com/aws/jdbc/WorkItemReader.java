@@ -0,0 +1,29 @@
+package com.aws.jdbc;
+
+import java.io.IOException;
+import java.time.format.DateTimeParseException;
+
+import com.aws.entities.DateCodec;
+import com.aws.entities.WorkItem;
+
+//Reads new work items one record at a time from an import stream
+public interface WorkItemReader {
+
+    //Returns the next record with date, description, guide and status set, or null at the end of the input.
+    //A malformed record is consumed and reported with an InvalidRecordException so reading can continue.
+    WorkItem read() throws IOException, InvalidRecordException;
+
+    //Number of the record returned (or rejected) by the last call to read, starting at 1
+    int getRecordNumber();
+
+    //Parses the date field of a record to an epoch day, WorkItem.NO_DATE when the field is missing
+    static int parseDate(String text) throws InvalidRecordException {
+        if (text == null)
+            return WorkItem.NO_DATE;
+        try {
+            return DateCodec.parseEpochDay(text);
+        } catch (DateTimeParseException e) {
+            throw new InvalidRecordException("date must be yyyy-MM-dd");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.aws.jdbc;
+
+import java.io.IOException;
+
+//Serializes work items to a response format as they are handed over
+public interface WorkItemWriter extends WorkItemHandler {
+
+    //Content type of the output, including the charset
+    String getContentType();
+
+    //Writes everything that comes before the first item
+    void start() throws IOException;
+
+    //Writes one item with the fields needed to modify a work item
+    void writeItemSummary(String id, String description, String status) throws IOException;
+
+    //Writes everything that comes after the last item and flushes the output
+    void finish() throws IOException;
+}
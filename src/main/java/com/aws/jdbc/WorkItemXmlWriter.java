@@ -0,0 +1,128 @@
+package com.aws.jdbc;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.aws.entities.WorkItem;
+
+//Writes <Items><Item>... XML straight to an output stream as work items are read.
+//The output matches what the DOM + Transformer code used to produce with the JDK serializer:
+//the same declaration, no indentation, empty elements written as <Name/> and the same character
+//escaping. WorkItemXmlWriterTest compares the two.
+public class WorkItemXmlWriter implements WorkItemWriter {
+
+    public static final String CONTENT_TYPE = "application/xml;charset=UTF-8";
+
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
+    private final Writer out;
+    private boolean rootOpen;
+    private boolean hasItems;
+
+    public WorkItemXmlWriter(OutputStream os) {
+        this.out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 8192);
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    //Writes the declaration and opens the Items element
+    @Override
+    public void start() throws IOException {
+        out.write(DECLARATION);
+        out.write("<Items");
+        rootOpen = true;
+    }
+
+    //Writes one Item with all of the work item fields
+    @Override
+    public void handle(WorkItem item) throws IOException {
+        openItem();
+        writeElement("Id", item.getId());
+        writeElement("Name", item.getName());
+        writeElement("Date", item.getDate());
+        writeElement("Description", item.getDescription());
+        writeElement("Guide", item.getGuide());
+        writeElement("Status", item.getStatus());
+        out.write("</Item>");
+    }
+
+    //Writes one Item with the fields needed to modify a work item
+    @Override
+    public void writeItemSummary(String id, String description, String status) throws IOException {
+        openItem();
+        writeElement("Id", id);
+        writeElement("Description", description);
+        writeElement("Status", status);
+        out.write("</Item>");
+    }
+
+    //Closes the Items element and flushes everything to the underlying stream
+    @Override
+    public void finish() throws IOException {
+        if (rootOpen) {
+            out.write(hasItems ? "</Items>" : "/>");
+            rootOpen = false;
+        }
+        out.flush();
+    }
+
+    private void openItem() throws IOException {
+        if (!hasItems) {
+            out.write('>');
+            hasItems = true;
+        }
+        out.write("<Item>");
+    }
+
+    private void writeElement(String name, String text) throws IOException {
+        out.write('<');
+        out.write(name);
+        if (text == null || text.isEmpty()) {
+            out.write("/>");
+            return;
+        }
+        out.write('>');
+        writeEscaped(text);
+        out.write("</");
+        out.write(name);
+        out.write('>');
+    }
+
+    //Escapes text content the same way the JDK serializer does
+    private void writeEscaped(String text) throws IOException {
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            String replacement;
+            if (ch == '<')
+                replacement = "&lt;";
+            else if (ch == '>')
+                replacement = "&gt;";
+            else if (ch == '&')
+                replacement = "&amp;";
+            else if ((ch < 0x20 && ch != '\t' && ch != '\n') || (ch >= 0x7F && ch <= 0x9F))
+                replacement = "&#" + (int) ch + ";";
+            else if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1)))
+                replacement = "&#" + Character.toCodePoint(ch, text.charAt(i + 1)) + ";";
+            else
+                continue;
+
+            if (i > start)
+                out.write(text, start, i - start);
+            out.write(replacement);
+            if (Character.isHighSurrogate(ch))
+                i++;
+            start = i + 1;
+        }
+        if (start < length)
+            out.write(text, start, length - start);
+    }
+}
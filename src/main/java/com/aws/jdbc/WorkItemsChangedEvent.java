@@ -0,0 +1,21 @@
+package com.aws.jdbc;
+
+//Published after work items of a user are inserted, modified or archived,
+//so anything cached for that user can be dropped
+public class WorkItemsChangedEvent {
+
+    //@Order of the listeners. The cached item lists are dropped before the responses and reports
+    //built from them, so a response or report rebuilt after its invalidation is not made from a stale list.
+    public static final int ITEMS_ORDER = 0;
+    public static final int DERIVED_ORDER = 1;
+
+    private final String username;
+
+    public WorkItemsChangedEvent(String username) {
+        this.username = username;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+}
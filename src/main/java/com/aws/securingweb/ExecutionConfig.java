@@ -0,0 +1,83 @@
+package com.aws.securingweb;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.coyote.AbstractProtocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+//Chooses the threads Tomcat runs requests on.
+//With tracker.web.execution=platform (the default) requests use Tomcat's own pool of
+//server.tomcat.max-threads threads. With tracker.web.execution=virtual every request gets a new
+//virtual thread, so a request blocked in JDBC costs a small stack rather than a pool thread and
+//concurrency is limited by server.tomcat.max-connections and tracker.jdbc.max-concurrency instead.
+//Virtual threads need a Java 21 runtime; on older runtimes a warning is printed and the
+//platform pool is used. They are looked up by reflection so the build stays on Java 8.
+@Configuration
+public class ExecutionConfig {
+
+    private final String execution;
+    private volatile ExecutorService virtualExecutor;
+
+    public ExecutionConfig(@Value("${tracker.web.execution:platform}") String execution) {
+        this.execution = execution;
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> requestExecutor() {
+        return factory -> {
+            if (!"virtual".equalsIgnoreCase(execution))
+                return;
+
+            ExecutorService executor = newVirtualThreadExecutor();
+            if (executor == null) {
+                System.err.println("tracker.web.execution=virtual needs Java 21 or later, "
+                        + "requests run on the Tomcat thread pool");
+                return;
+            }
+            virtualExecutor = executor;
+            factory.addConnectorCustomizers(connector ->
+                    ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(executor));
+        };
+    }
+
+    //Returns whether requests run on virtual threads
+    public boolean isVirtual() {
+        return virtualExecutor != null;
+    }
+
+    //Tomcat does not shut down an executor it was given
+    @PreDestroy
+    public void shutdown() {
+        ExecutorService executor = virtualExecutor;
+        if (executor != null)
+            executor.shutdown();
+    }
+
+    //Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory()),
+    //or null when the runtime has no virtual threads
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "http-virtual-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("web.virtualThreads=%b%n", isVirtual());
+    }
+}
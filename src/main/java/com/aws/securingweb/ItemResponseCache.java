@@ -0,0 +1,228 @@
+package com.aws.securingweb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import com.aws.jdbc.LruCache;
+import com.aws.jdbc.WorkItemsChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+//Keeps the serialized /retrieve responses (XML or JSON, plain and gzip) of each user so repeated
+//requests are answered without touching MySQL or the serializers. Every body has a strong ETag derived
+//from its bytes. The entries of a user are dropped when a WorkItemsChangedEvent is published for them,
+//after the WorkItemCache lists they are built from, and when they are older than the TTL.
+@Component
+public class ItemResponseCache {
+
+    //Bodies smaller than this are not worth compressing
+    private static final int MIN_GZIP_SIZE = 1024;
+
+    private final LruCache<Key, Entry> responses;
+    private final int maxEntryBytes;
+
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder oversized = new LongAdder();
+
+    public ItemResponseCache(@Value("${tracker.response-cache.max-entries:500}") int maxEntries,
+                             @Value("${tracker.response-cache.max-entry-bytes:1048576}") int maxEntryBytes,
+                             @Value("${tracker.response-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.responses = new LruCache<Key, Entry>("responseCache", maxEntries, ttlSeconds);
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    //Returns the cached response or null when it has to be built
+    public Entry get(String username, boolean archived, String contentType) {
+        return responses.get(new Key(username, archived, contentType));
+    }
+
+    //Starts capturing a response body. The body is buffered up to the size limit; a larger body is
+    //passed on to the stream returned by spillTarget and is not cached.
+    public Capture startCapture(String username, boolean archived, String contentType, StreamSupplier spillTarget) {
+        Key key = new Key(username, archived, contentType);
+        return new Capture(responses.start(key), spillTarget);
+    }
+
+    //Drops the responses of a user
+    public void invalidate(String username) {
+        responses.invalidateIf(key -> key.username.equals(username));
+    }
+
+    @EventListener
+    @Order(WorkItemsChangedEvent.DERIVED_ORDER)
+    public void onItemsChanged(WorkItemsChangedEvent event) {
+        invalidate(event.getUsername());
+    }
+
+    void recordNotModified() {
+        notModified.increment();
+    }
+
+    public int getSize() {
+        return responses.getSize();
+    }
+
+    @Override
+    public String toString() {
+        return responses + String.format("responseCache.notModified=%d%nresponseCache.oversized=%d%n",
+                notModified.sum(), oversized.sum());
+    }
+
+    //Opens the stream a large response is written to instead of the cache buffer
+    public interface StreamSupplier {
+        OutputStream get() throws IOException;
+    }
+
+    //A serialized response body with its ETag and, created on first use, its gzip variant
+    public static class Entry {
+
+        private final String contentType;
+        private final byte[] body;
+        private final String etag;
+        private volatile byte[] gzipBody;
+
+        private Entry(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+            this.etag = "\"" + digest(body) + "\"";
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public boolean isCompressible() {
+            return body.length >= MIN_GZIP_SIZE;
+        }
+
+        //The gzip variant is a different representation, so it gets its own strong ETag
+        public String getGzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+
+        public byte[] getGzipBody() throws IOException {
+            byte[] compressed = gzipBody;
+            if (compressed == null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 64);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                    gzip.write(body);
+                }
+                compressed = bytes.toByteArray();
+                gzipBody = compressed;
+            }
+            return compressed;
+        }
+
+        private static String digest(byte[] body) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+                return String.format("%064x", new BigInteger(1, hash));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    //Buffers a response body while it is serialized
+    public class Capture extends OutputStream {
+
+        private final LruCache<Key, Entry>.Load load;
+        private final StreamSupplier spillTarget;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        private OutputStream target;
+
+        private Capture(LruCache<Key, Entry>.Load load, StreamSupplier spillTarget) {
+            this.load = load;
+            this.spillTarget = spillTarget;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target == null && buffer.size() + len > maxEntryBytes)
+                spill();
+
+            if (target != null)
+                target.write(b, off, len);
+            else
+                buffer.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null)
+                target.flush();
+        }
+
+        //Returns the cached entry, or null when the body was too large and has already been written out
+        public Entry complete() {
+            if (target != null)
+                return null;
+
+            Entry entry = new Entry(load.getKey().contentType, buffer.toByteArray());
+            buffer = null;
+            load.complete(entry);
+            return entry;
+        }
+
+        //Discards the body after a failure
+        public void abandon() {
+            buffer = null;
+            load.abandon();
+        }
+
+        private void spill() throws IOException {
+            oversized.increment();
+            load.abandon();
+            target = spillTarget.get();
+            buffer.writeTo(target);
+            buffer = null;
+        }
+    }
+
+    private static class Key {
+
+        private final String username;
+        private final boolean archived;
+        private final String contentType;
+
+        private Key(String username, boolean archived, String contentType) {
+            this.username = username;
+            this.archived = archived;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return archived == other.archived && username.equals(other.username) && contentType.equals(other.contentType);
+        }
+
+        @Override
+        public int hashCode() {
+            return (username.hashCode() * 31 + contentType.hashCode()) * 31 + (archived ? 1 : 0);
+        }
+    }
+}
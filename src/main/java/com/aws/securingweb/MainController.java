@@ -1,23 +1,95 @@
 package com.aws.securingweb;
 
+import com.aws.entities.DateCodec;
 import com.aws.entities.WorkItem;
+import com.aws.jdbc.BulkIngestReport;
+import com.aws.jdbc.InvalidRecordException;
 import com.aws.jdbc.RetrieveItems;
+import com.aws.jdbc.WorkItemCsvReader;
+import com.aws.jdbc.WorkItemJsonLinesReader;
+import com.aws.jdbc.WorkItemJsonWriter;
+import com.aws.jdbc.WorkItemPage;
+import com.aws.jdbc.WorkItemQuery;
+import com.aws.jdbc.WorkItemReader;
+import com.aws.jdbc.WorkItemWriter;
+import com.aws.jdbc.WorkItemXmlWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import com.aws.jdbc.InjectWorkService;
-import com.aws.services.WriteExcel;
-import com.aws.services.SendMessages;
+import com.aws.services.ReportFileCache;
+import com.aws.services.ReportFormat;
+import com.aws.services.ReportFormats;
+import com.aws.services.ReportJob;
+import com.aws.services.ReportJobService;
+import com.aws.services.ReportLinks;
 
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @Controller
 public class MainController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    //Retry-After sent when the report queue is full
+    private static final String REPORT_RETRY_SECONDS = "30";
+
+    //Retry-After sent when a request could not get a database connection in time
+    private static final String DATABASE_RETRY_SECONDS = "1";
+
+    //Largest page a client can request from /retrieve
+    private final int maxPageSize;
+
+    //Largest number of ids accepted by the bulk endpoints
+    private final int maxBulkItems;
+
+    //The services are singletons shared by all requests and must be thread safe
+    private final RetrieveItems ri;
+    private final InjectWorkService ws;
+    private final ItemResponseCache responseCache;
+    private final ReportJobService reportJobs;
+    private final ReportFormats reportFormats;
+    private final ReportFileCache reportFiles;
+    private final ReportLinks reportLinks;
+
+    public MainController(RetrieveItems ri, InjectWorkService ws, ItemResponseCache responseCache,
+                          ReportJobService reportJobs, ReportFormats reportFormats,
+                          ReportFileCache reportFiles, ReportLinks reportLinks,
+                          @Value("${tracker.retrieve.max-page-size:1000}") int maxPageSize,
+                          @Value("${tracker.bulk.max-items:1000}") int maxBulkItems) {
+        this.ri = ri;
+        this.ws = ws;
+        this.responseCache = responseCache;
+        this.reportJobs = reportJobs;
+        this.reportFormats = reportFormats;
+        this.reportFiles = reportFiles;
+        this.reportLinks = reportLinks;
+        this.maxPageSize = maxPageSize;
+        this.maxBulkItems = maxBulkItems;
+    }
+
     @GetMapping("/")
     public String root() {
         return "index";
@@ -35,46 +107,198 @@ public class MainController {
 
 
     //This is invoked when we want to build a report
-    @RequestMapping(value = "/report", method = RequestMethod.GET)
+    //The report is queued and emailed in the background; the job can be followed with /report/status.
+    //The optional format parameter picks xls, xlsx, csv, jsonl or columnar.
+    @RequestMapping(value = "/report", method = {RequestMethod.GET, RequestMethod.POST})
     @ResponseBody
-    String getReport(HttpServletRequest request, HttpServletResponse response) {
-
-        //Get the work item list
-        //Get the Logged in User
-        org.springframework.security.core.userdetails.User user2 = (org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        String name = user2.getUsername();
-        RetrieveItems ri = new RetrieveItems();
-        List<WorkItem> theList =  ri.getItemsDataSQLReport(name);
+    ReportJob getReport(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String email = request.getParameter("email");
+        if (email == null || email.trim().isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "An email address is required");
+            return null;
+        }
 
-        WriteExcel writeExcel = new WriteExcel();
-        SendMessages sm = new SendMessages();
-        java.io.InputStream is = writeExcel.exportExcel(theList);
+        ReportFormat format = reportFormats.get(request.getParameter("format"));
+        if (format == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The format must be one of " + reportFormats.getFormats().keySet());
+            return null;
+        }
 
         try {
-            //copyInputStreamToFile(is, testFile);
-            sm.SendReport(is);
+            ReportJob job = reportJobs.submit(getLoggedUser(), email.trim(), format);
+            response.setStatus(HttpServletResponse.SC_ACCEPTED);
+            return job;
+        } catch (RejectedExecutionException e) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, REPORT_RETRY_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many reports are queued");
+            return null;
         }
-        catch (Exception e){
-            e.getStackTrace();
+    }
+
+    //This is invoked when we want to download a report instead of having it emailed
+    //The report file is kept on disk until the items change, so the download can be resumed
+    //with a byte range. Formats that compress well are sent gzipped to clients that accept it.
+    @RequestMapping(value = "/report/download", method = RequestMethod.GET)
+    void downloadReport(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ReportFormat format = reportFormats.get(request.getParameter("format"));
+        if (format == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The format must be one of " + reportFormats.getFormats().keySet());
+            return;
+        }
+
+        boolean gzip = format.isCompressible() && acceptsGzip(request);
+        try (ReportFileCache.Download download = reportFiles.open(getLoggedUser(), format, gzip)) {
+            long length = download.getLength();
+            response.setContentType(format.getContentType());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + format.getFileName() + "\"");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+            response.setHeader(HttpHeaders.ETAG, download.getEtag());
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, download.getLastModified());
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (format.isCompressible())
+                response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (gzip)
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+            if (matchesEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), download.getEtag())) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            long start = 0;
+            long end = length - 1;
+            String range = request.getHeader(HttpHeaders.RANGE);
+            if (range != null && rangeApplies(request, download)) {
+                long[] bounds = parseRange(range, length);
+                if (bounds != null && bounds.length == 0) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                if (bounds != null) {
+                    start = bounds[0];
+                    end = bounds[1];
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                }
+            }
+
+            transfer(download.getChannel(), start, end, response);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            sendError(response, e);
         }
-        return "Report is created";
     }
 
+    //This is invoked from the link in a report email that was too large to attach
+    //The random token in the path is the credential, so this path does not require a login
+    @RequestMapping(value = "/report/shared/{token}", method = RequestMethod.GET)
+    void getSharedReport(@PathVariable("token") String token, HttpServletResponse response) throws IOException {
+        ReportLinks.StoredReport report = reportLinks.open(token);
+        if (report == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(report.getFile().toPath(), StandardOpenOption.READ)) {
+            response.setContentType(report.getContentType());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + report.getFileName() + "\"");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-store");
+            transfer(channel, 0, channel.size() - 1, response);
+        }
+    }
 
-    //This is invoked when we want to change the value of a work item
+    //This is invoked when we check on a queued report
+    @RequestMapping(value = "/report/status", method = RequestMethod.GET)
+    @ResponseBody
+    ReportJob getReportStatus(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ReportJob job = reportJobs.getJob(request.getParameter("id"), getLoggedUser());
+        if (job == null)
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        return job;
+    }
+
+
+    //This is invoked when we want to archive a work item
     @RequestMapping(value = "/archive", method = RequestMethod.POST)
     @ResponseBody
-    String ArchieveWorkItem(HttpServletRequest request, HttpServletResponse response) {
+    String ArchieveWorkItem(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String id = request.getParameter("id");
 
-        RetrieveItems ri = new RetrieveItems();
-        WorkItem item= ri.GetWorkItembyId(id);
-        // db.injectDynamoItem(item);
-        ri.FlipItemArchive(id );
+        try {
+            WorkItem item = ri.archiveItem(id, getLoggedUser());
+            if (item == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return null;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            sendError(response, e);
+            return null;
+        }
         return id ;
     }
 
 
+    //This is invoked when we want to archive several work items at once
+    //Takes the ids as repeated id parameters (or comma separated) and returns the result per id
+    @RequestMapping(value = "/archive/bulk", method = RequestMethod.POST)
+    @ResponseBody
+    Map<String, String> archiveWorkItems(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        List<String> ids = getIds(request);
+        if (ids.isEmpty() || ids.size() > maxBulkItems) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Between 1 and " + maxBulkItems + " ids are required");
+            return null;
+        }
+
+        try {
+            Map<String, Boolean> archived = ri.archiveItems(ids, getLoggedUser());
+            return toBulkResults(archived, "archived");
+        } catch (SQLException e) {
+            e.printStackTrace();
+            sendError(response, e);
+            return null;
+        }
+    }
+
+
+    //This is invoked when we want to change several work items at once
+    //Takes repeated id parameters with either one description and status for all of them
+    //or one description and status per id, and returns the result per id
+    @RequestMapping(value = "/changewi/bulk", method = RequestMethod.POST)
+    @ResponseBody
+    Map<String, String> changeWorkItems(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String[] ids = request.getParameterValues("id");
+        String[] descriptions = request.getParameterValues("description");
+        String[] statuses = request.getParameterValues("status");
+
+        if (ids == null || ids.length == 0 || ids.length > maxBulkItems
+                || !matchesIds(descriptions, ids) || !matchesIds(statuses, ids)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "Between 1 and " + maxBulkItems + " ids are required, with one description and status or one per id");
+            return null;
+        }
+
+        List<WorkItem> changes = new ArrayList<WorkItem>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            changes.add(WorkItem.builder()
+                    .id(ids[i])
+                    .description(descriptions.length == 1 ? descriptions[0] : descriptions[i])
+                    .status(statuses.length == 1 ? statuses[0] : statuses[i])
+                    .build());
+        }
+
+        try {
+            Map<String, Boolean> updated = ws.modifySubmissions(changes, getLoggedUser());
+            return toBulkResults(updated, "updated");
+        } catch (SQLException e) {
+            e.printStackTrace();
+            sendError(response, e);
+            return null;
+        }
+    }
+
+
     //This is invoked when we want to change the value of a work item
     @RequestMapping(value = "/changewi", method = RequestMethod.POST)
     @ResponseBody
@@ -83,59 +307,119 @@ public class MainController {
         String description = request.getParameter("description");
         String status   = request.getParameter("status");
 
-        InjectWorkService ws = new InjectWorkService();
-        return ws.modifySubmission(id, description, status) ;
+        return ws.modifySubmission(id, getLoggedUser(), description, status) ;
     }
 
     //This is invoked when we retrieve all items for a given writer
+    //The XML (or JSON) is written to the response while the rows are read from MySQL.
+    //Optional parameters: status and guide filters, sort=asc|desc (by date), pageSize and the
+    //cursor returned in the X-Next-Cursor header of the previous page.
     @RequestMapping(value = "/retrieve", method = RequestMethod.GET)
-    @ResponseBody
-    String retrieveItems(HttpServletRequest request, HttpServletResponse response) {
+    void retrieveItems(HttpServletRequest request, HttpServletResponse response) throws IOException {
 
         //Get the Logged in User
-        org.springframework.security.core.userdetails.User user2 = (org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        String name = user2.getUsername();
-
-        RetrieveItems ri = new RetrieveItems();
+        String name = getLoggedUser();
 
         String type = request.getParameter("type");
-        //Pass back all data from WOrk table
+        boolean archived = !"active".equals(type);
+
+        WorkItemQuery query = new WorkItemQuery(name, archived);
+        query.setStatus(request.getParameter("status"));
+        query.setGuide(request.getParameter("guide"));
 
+        int pageSize = 0;
+        try {
+            String sort = request.getParameter("sort");
+            if (sort != null)
+                query.setDescending(sort.equalsIgnoreCase("desc"));
+
+            String cursor = request.getParameter("cursor");
+            if (cursor != null && !cursor.isEmpty())
+                query.setCursor(cursor);
+
+            String size = request.getParameter("pageSize");
+            if (size != null && !size.isEmpty()) {
+                int requested = Integer.parseInt(size);
+                if (requested < 1)
+                    throw new IllegalArgumentException("pageSize must be at least 1");
+                pageSize = Math.min(requested, maxPageSize);
+            }
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
 
-        if (type.equals("active"))
-            return ri.getItemsDataSQL(name) ;
-        else
-            return ri.getArchiveData(name) ;
+        //Pass back all data from WOrk table
+        boolean json = wantsJson(request);
+        if (pageSize == 0 && query.isUnfiltered()) {
+            writeItemList(request, response, name, archived, json);
+            return;
+        }
+
+        WorkItemWriter writer = newWriter(json, response);
+        try {
+            if (pageSize > 0) {
+                WorkItemPage page = ri.getItemsPage(query, pageSize);
+                if (page.getNextCursor() != null)
+                    response.setHeader(NEXT_CURSOR_HEADER, page.getNextCursor());
+
+                writer.start();
+                for (WorkItem item : page.getItems())
+                    writer.handle(item);
+                writer.finish();
+            } else {
+                writer.start();
+                ri.streamItems(query, writer);
+                writer.finish();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            sendError(response, e);
+        }
     }
 
 
     //This is invoked when we want to return a work item to modify
     @RequestMapping(value = "/modify", method = RequestMethod.POST)
-    @ResponseBody
-    String modifyWork(HttpServletRequest request, HttpServletResponse response) {
+    void modifyWork(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String id = request.getParameter("id");
-        RetrieveItems ri = new RetrieveItems();
-        return ri.GetItemSQL(id) ;
+        WorkItem item = ri.GetItemSQL(id);
+        if (item == null) {
+            sendError(response);
+            return;
+        }
+
+        WorkItemWriter writer = newWriter(wantsJson(request), response);
+        writer.start();
+        writer.writeItemSummary(item.getId(), item.getDescription(), item.getStatus());
+        writer.finish();
     }
 
     //This is invoked when we retrieve all items for a given writer
     @RequestMapping(value = "/work", method = RequestMethod.POST)
     @ResponseBody
-    String getWork(HttpServletRequest request, HttpServletResponse response) {
+    String getWork(HttpServletRequest request, HttpServletResponse response) throws IOException {
 
-        InjectWorkService ws = new InjectWorkService();
-
-        WorkItem item = new WorkItem();
         String description = request.getParameter("description");
         String date = request.getParameter("date");
         String guide = request.getParameter("guide");
         String status = request.getParameter("status");
 
-        item.SetDate(date);
-        item.SetName(getLoggedUser());
-        item.SetDescription(description);
-        item.SetGuide(guide);
-        item.SetStatus(status);
+        int epochDay;
+        try {
+            epochDay = DateCodec.parseEpochDay(date == null ? "" : date);
+        } catch (DateTimeParseException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The date must be yyyy-MM-dd");
+            return null;
+        }
+
+        WorkItem item = WorkItem.builder()
+                .epochDay(epochDay)
+                .name(getLoggedUser())
+                .description(description)
+                .guide(guide)
+                .status(status)
+                .build();
 
         // Persist the data
         String itemNum =ws.injestNewSubmission(item);
@@ -145,6 +429,279 @@ public class MainController {
         return itemNum ;
     }
 
+    //This is invoked when we import many new work items at once
+    //The body is CSV with a date,description,guide,status header or JSON lines, picked by the
+    //format parameter (csv or jsonl) or the Content-Type. The body is read and inserted one chunk at a time.
+    @RequestMapping(value = "/work/bulk", method = RequestMethod.POST)
+    @ResponseBody
+    BulkIngestReport importWork(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (request.getCharacterEncoding() == null)
+            request.setCharacterEncoding("UTF-8");
+        BufferedReader body = request.getReader();
+
+        WorkItemReader reader;
+        try {
+            reader = wantsJsonLines(request) ? new WorkItemJsonLinesReader(body) : new WorkItemCsvReader(body);
+        } catch (InvalidRecordException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return null;
+        }
+
+        try {
+            return ws.injestBulk(reader, getLoggedUser());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            sendError(response, e);
+            return null;
+        }
+    }
+
+    //An explicit format parameter wins over the Content-Type; CSV is the default
+    private static boolean wantsJsonLines(HttpServletRequest request) {
+        String format = request.getParameter("format");
+        if (format != null)
+            return format.equalsIgnoreCase("jsonl") || format.equalsIgnoreCase("ndjson");
+
+        String contentType = request.getContentType();
+        if (contentType == null)
+            return false;
+        contentType = contentType.toLowerCase();
+        return contentType.startsWith("application/x-ndjson") || contentType.startsWith("application/jsonl")
+                || contentType.startsWith("application/json");
+    }
+
+    //Writes the complete item list of the user from the ItemResponseCache. Requests whose If-None-Match
+    //header carries the current ETag get a 304 without reading MySQL. On a miss the list is serialized
+    //into the cache, unless it is too large to cache, in which case it is streamed straight to the client.
+    private void writeItemList(HttpServletRequest request, HttpServletResponse response,
+                               String name, boolean archived, boolean json) throws IOException
+    {
+        String contentType = json ? WorkItemJsonWriter.CONTENT_TYPE : WorkItemXmlWriter.CONTENT_TYPE;
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING);
+
+        ItemResponseCache.Entry entry = responseCache.get(name, archived, contentType);
+        if (entry == null) {
+            ItemResponseCache.Capture capture = responseCache.startCapture(name, archived, contentType, response::getOutputStream);
+            WorkItemWriter writer = newWriter(json, capture);
+            try {
+                writer.start();
+                ri.streamItems(name, archived, writer);
+                writer.finish();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                capture.abandon();
+                sendError(response, e);
+                return;
+            }
+
+            entry = capture.complete();
+            if (entry == null)
+                return;
+        }
+
+        boolean gzip = entry.isCompressible() && acceptsGzip(request);
+        String etag = gzip ? entry.getGzipEtag() : entry.getEtag();
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        if (matchesEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            responseCache.recordNotModified();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = gzip ? entry.getGzipBody() : entry.getBody();
+        if (gzip)
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    //True when the If-None-Match header lists the ETag (or is *)
+    private boolean matchesEtag(String ifNoneMatch, String etag)
+    {
+        if (ifNoneMatch == null)
+            return false;
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/"))
+                candidate = candidate.substring(2);
+            if (candidate.equals("*") || candidate.equals(etag))
+                return true;
+        }
+        return false;
+    }
+
+    //Sends bytes start to end of the file. They are copied channel to channel and never read
+    //into the heap as a whole.
+    private void transfer(FileChannel channel, long start, long end, HttpServletResponse response) throws IOException
+    {
+        response.setContentLengthLong(end - start + 1);
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        long position = start;
+        while (position <= end) {
+            long sent = channel.transferTo(position, end - position + 1, out);
+            if (sent <= 0)
+                break;
+            position += sent;
+        }
+    }
+
+    //A Range is only honoured when If-Range is absent or still names the current file
+    private boolean rangeApplies(HttpServletRequest request, ReportFileCache.Download download)
+    {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null)
+            return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+            return ifRange.equals(download.getEtag());
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == download.getLastModified() / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    //Parses a single bytes=first-last, bytes=first- or bytes=-suffix range.
+    //Returns null to send the whole file (malformed or multiple ranges) and an empty array when
+    //the range starts past the end of the file.
+    private static long[] parseRange(String range, long length)
+    {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0)
+            return null;
+
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0)
+            return null;
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0)
+                    return new long[0];
+                return new long[] {Math.max(0, length - suffix), length - 1};
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+            if (start < 0 || end < start)
+                return null;
+            if (start >= length)
+                return new long[0];
+            return new long[] {start, Math.min(end, length - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private boolean acceptsGzip(HttpServletRequest request)
+    {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    //Creates the serializer for the response format and sets the content type
+    private WorkItemWriter newWriter(boolean json, HttpServletResponse response) throws IOException
+    {
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        response.setContentType(json ? WorkItemJsonWriter.CONTENT_TYPE : WorkItemXmlWriter.CONTENT_TYPE);
+        return newWriter(json, response.getOutputStream());
+    }
+
+    private WorkItemWriter newWriter(boolean json, OutputStream out)
+    {
+        if (json)
+            return new WorkItemJsonWriter(out);
+        return new WorkItemXmlWriter(out);
+    }
+
+    //Picks the response format - JSON when the client asks for it with format=json or
+    //an Accept header that prefers application/json, otherwise the XML the web page reads
+    private boolean wantsJson(HttpServletRequest request)
+    {
+        String format = request.getParameter("format");
+        if (format != null)
+            return format.equalsIgnoreCase("json");
+
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null)
+            return false;
+
+        try {
+            List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+            MediaType.sortBySpecificityAndQuality(mediaTypes);
+            for (MediaType mediaType : mediaTypes) {
+                if (mediaType.isWildcardType() || mediaType.isWildcardSubtype())
+                    continue;
+                if (MediaType.APPLICATION_JSON.includes(mediaType))
+                    return true;
+                if (MediaType.APPLICATION_XML.includes(mediaType) || MediaType.TEXT_XML.includes(mediaType))
+                    return false;
+            }
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        return false;
+    }
+
+    //Collects the id parameters, each of which can hold a comma separated list
+    private List<String> getIds(HttpServletRequest request)
+    {
+        List<String> ids = new ArrayList<String>();
+        String[] values = request.getParameterValues("id");
+        if (values == null)
+            return ids;
+
+        for (String value : values) {
+            for (String id : value.split(",")) {
+                id = id.trim();
+                if (!id.isEmpty())
+                    ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private boolean matchesIds(String[] values, String[] ids)
+    {
+        return values != null && (values.length == 1 || values.length == ids.length);
+    }
+
+    private Map<String, String> toBulkResults(Map<String, Boolean> results, String success)
+    {
+        Map<String, String> outcome = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, Boolean> result : results.entrySet())
+            outcome.put(result.getKey(), result.getValue() ? success : "not found");
+        return outcome;
+    }
+
+    //Reports a failure unless part of the response has already been sent
+    private void sendError(HttpServletResponse response) throws IOException
+    {
+        if (!response.isCommitted()) {
+            response.reset();
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    //As above, but a request that timed out waiting for a connection (pool or tracker.jdbc.max-concurrency)
+    //is asked to retry
+    private void sendError(HttpServletResponse response, SQLException e) throws IOException
+    {
+        if (e instanceof SQLTransientConnectionException && !response.isCommitted()) {
+            response.reset();
+            response.setHeader(HttpHeaders.RETRY_AFTER, DATABASE_RETRY_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        sendError(response);
+    }
+
     private String getLoggedUser()
     {
         //Get the Logged in User
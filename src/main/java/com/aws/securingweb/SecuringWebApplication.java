@@ -2,8 +2,10 @@ package com.aws.securingweb;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = "com.aws")
+@EnableScheduling
 public class SecuringWebApplication {
 
     public static void main(String[] args) throws Throwable {
@@ -0,0 +1,52 @@
+package com.aws.securingweb;
+
+import com.aws.jdbc.ConnectionLimiter;
+import com.aws.jdbc.PoolMetrics;
+import com.aws.jdbc.StatementCache;
+import com.aws.jdbc.WorkItemCache;
+import com.aws.services.MailQueue;
+import com.aws.services.ReportFileCache;
+import com.aws.services.ReportJobService;
+import com.aws.services.ScheduledReports;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+@Controller
+public class StatsController {
+
+    private final PoolMetrics poolMetrics;
+    private final ConnectionLimiter connectionLimiter;
+    private final ExecutionConfig execution;
+    private final StatementCache statementCache;
+    private final WorkItemCache itemCache;
+    private final ItemResponseCache responseCache;
+    private final ReportJobService reportJobs;
+    private final ReportFileCache reportFiles;
+    private final MailQueue mailQueue;
+    private final ScheduledReports scheduledReports;
+
+    public StatsController(PoolMetrics poolMetrics, ConnectionLimiter connectionLimiter, ExecutionConfig execution,
+                           StatementCache statementCache, WorkItemCache itemCache,
+                           ItemResponseCache responseCache, ReportJobService reportJobs,
+                           ReportFileCache reportFiles, MailQueue mailQueue, ScheduledReports scheduledReports) {
+        this.poolMetrics = poolMetrics;
+        this.connectionLimiter = connectionLimiter;
+        this.execution = execution;
+        this.statementCache = statementCache;
+        this.itemCache = itemCache;
+        this.responseCache = responseCache;
+        this.reportJobs = reportJobs;
+        this.reportFiles = reportFiles;
+        this.mailQueue = mailQueue;
+        this.scheduledReports = scheduledReports;
+    }
+
+    //Returns runtime statistics as name=value lines
+    @RequestMapping(value = "/stats", method = RequestMethod.GET, produces = "text/plain")
+    @ResponseBody
+    String getStats() {
+        return execution.toString() + poolMetrics + connectionLimiter + statementCache + itemCache + responseCache + reportJobs + reportFiles + mailQueue + scheduledReports;
+    }
+}
@@ -0,0 +1,188 @@
+package com.aws.services;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aws.entities.WorkItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+//Compact column oriented binary report for programs that load the data.
+//Items are collected in row groups; each group stores the name, date, guide, description and
+//status columns one after the other, so repeated values sit together and most columns can be
+//dictionary encoded. Only one row group is held in memory.
+//
+//Layout, version 1:
+//  file       = magic, rowGroup*, footer, footerLength, magic
+//  magic      = the 4 ASCII bytes "WRC1"
+//  rowGroup   = varint rows, then column * 5 in the order name, date, guide, description, status
+//  column     = 0x00, string * rows                                   (plain)
+//             | 0x01, varint n, string * n, varint ref * rows         (dictionary)
+//               ref is 0 for null, else 1 + the index of the value among the n entries
+//  footer     = varint groups, then for each row group: varint offset, varint rows
+//               offset is the byte position of the group from the start of the file
+//  footerLength = int32, big endian, the length of footer in bytes
+//  varint     = unsigned LEB128: 7 bits per byte, least significant group first,
+//               the high bit set on every byte but the last
+//  string     = varint 0 for null, else varint (byte length + 1) followed by the UTF-8 bytes
+//Dates are yyyy-MM-dd strings. A reader can start at the front and read row groups until
+//the footer, or read the last 8 bytes, check the magic and use footerLength to find the footer
+//and seek to any row group. A writer picks the dictionary encoding for a column of a row group
+//when it has at most half as many distinct values as rows; readers must accept either encoding.
+//ColumnarReportFormatTest contains a reader of this layout.
+@Component
+public class ColumnarReportFormat implements ReportFormat {
+
+    private static final byte[] MAGIC = {'W', 'R', 'C', '1'};
+    private static final int COLUMNS = 5;
+    private static final int PLAIN = 0;
+    private static final int DICTIONARY = 1;
+
+    private final int rowGroupSize;
+
+    public ColumnarReportFormat(@Value("${tracker.report.columnar.row-group-size:4096}") int rowGroupSize) {
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    @Override
+    public String getName() {
+        return "columnar";
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/octet-stream";
+    }
+
+    @Override
+    public String getFileName() {
+        return "WorkReport.wrc";
+    }
+
+    @Override
+    public boolean isCompressible() {
+        return true;
+    }
+
+    @Override
+    public ReportWriter open(OutputStream os) throws IOException {
+        return new ColumnarWriter(os, rowGroupSize);
+    }
+
+    private static class ColumnarWriter implements ReportWriter {
+
+        private final OutputStream out;
+        private final String[][] columns;
+        private final List<long[]> groups = new ArrayList<long[]>();
+        private int rows;
+        private long position;
+
+        ColumnarWriter(OutputStream os, int rowGroupSize) throws IOException {
+            this.out = new BufferedOutputStream(os, 65536);
+            this.columns = new String[COLUMNS][rowGroupSize];
+            writeBytes(MAGIC);
+        }
+
+        @Override
+        public void handle(WorkItem item) throws IOException {
+            columns[0][rows] = item.getName();
+            columns[1][rows] = item.getDate();
+            columns[2][rows] = item.getGuide();
+            columns[3][rows] = item.getDescription();
+            columns[4][rows] = item.getStatus();
+            if (++rows == columns[0].length)
+                writeRowGroup();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (rows > 0)
+                writeRowGroup();
+
+            long footerStart = position;
+            writeVarint(groups.size());
+            for (long[] group : groups) {
+                writeVarint(group[0]);
+                writeVarint(group[1]);
+            }
+            int footerLength = (int) (position - footerStart);
+            out.write(footerLength >>> 24);
+            out.write(footerLength >>> 16);
+            out.write(footerLength >>> 8);
+            out.write(footerLength);
+            position += 4;
+            writeBytes(MAGIC);
+            out.flush();
+        }
+
+        private void writeRowGroup() throws IOException {
+            groups.add(new long[] {position, rows});
+            writeVarint(rows);
+            for (String[] column : columns)
+                writeColumn(column);
+            for (String[] column : columns)
+                Arrays.fill(column, 0, rows, null);
+            rows = 0;
+        }
+
+        //Dictionary encoding is used when at least half of the values are repeats
+        private void writeColumn(String[] values) throws IOException {
+            Map<String, Integer> dictionary = new HashMap<String, Integer>();
+            List<String> entries = new ArrayList<String>();
+            for (int i = 0; i < rows && entries.size() * 2 <= rows; i++) {
+                if (values[i] != null && !dictionary.containsKey(values[i])) {
+                    dictionary.put(values[i], entries.size());
+                    entries.add(values[i]);
+                }
+            }
+
+            if (entries.size() * 2 > rows) {
+                out.write(PLAIN);
+                position++;
+                for (int i = 0; i < rows; i++)
+                    writeString(values[i]);
+                return;
+            }
+
+            out.write(DICTIONARY);
+            position++;
+            writeVarint(entries.size());
+            for (String entry : entries)
+                writeString(entry);
+            for (int i = 0; i < rows; i++)
+                writeVarint(values[i] == null ? 0 : dictionary.get(values[i]) + 1);
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1L);
+            writeBytes(bytes);
+        }
+
+        private void writeVarint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+                position++;
+            }
+            out.write((int) value);
+            position++;
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            out.write(bytes);
+            position += bytes.length;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.aws.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.aws.entities.WorkItem;
+import org.springframework.stereotype.Component;
+
+//Comma separated values as described by RFC 4180: a header row, CRLF line ends and
+//fields quoted when they contain a comma, quote or line break. Missing values are empty fields.
+//A field starting with =, +, -, @, tab or CR gets a leading ' so spreadsheets show it as text
+//instead of evaluating it as a formula.
+@Component
+public class CsvReportFormat implements ReportFormat {
+
+    private static final String HEADER = "Writer,Date,Guide,Description,Status\r\n";
+
+    @Override
+    public String getName() {
+        return "csv";
+    }
+
+    @Override
+    public String getContentType() {
+        return "text/csv;charset=UTF-8";
+    }
+
+    @Override
+    public String getFileName() {
+        return "WorkReport.csv";
+    }
+
+    @Override
+    public boolean isCompressible() {
+        return true;
+    }
+
+    @Override
+    public ReportWriter open(OutputStream os) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 8192);
+        out.write(HEADER);
+        return new ReportWriter() {
+            @Override
+            public void handle(WorkItem item) throws IOException {
+                writeField(out, item.getName());
+                out.write(',');
+                writeField(out, item.getDate());
+                out.write(',');
+                writeField(out, item.getGuide());
+                out.write(',');
+                writeField(out, item.getDescription());
+                out.write(',');
+                writeField(out, item.getStatus());
+                out.write("\r\n");
+            }
+
+            @Override
+            public void finish() throws IOException {
+                out.flush();
+            }
+        };
+    }
+
+    private static void writeField(Writer out, String value) throws IOException {
+        if (value == null)
+            return;
+        if (!value.isEmpty() && isFormulaStart(value.charAt(0)))
+            value = "'" + value;
+
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"')
+                out.write('"');
+            out.write(ch);
+        }
+        out.write('"');
+    }
+
+    private static boolean isFormulaStart(char ch) {
+        return ch == '=' || ch == '+' || ch == '-' || ch == '@' || ch == '\t' || ch == '\r';
+    }
+}
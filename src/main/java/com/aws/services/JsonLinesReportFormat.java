@@ -0,0 +1,70 @@
+package com.aws.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.aws.entities.WorkItem;
+import com.aws.jdbc.WorkItemJsonWriter;
+import org.springframework.stereotype.Component;
+
+//One JSON object per line with the name, date, guide, description and status of an item.
+//Missing values are written as null.
+@Component
+public class JsonLinesReportFormat implements ReportFormat {
+
+    @Override
+    public String getName() {
+        return "jsonl";
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/x-ndjson;charset=UTF-8";
+    }
+
+    @Override
+    public String getFileName() {
+        return "WorkReport.jsonl";
+    }
+
+    @Override
+    public boolean isCompressible() {
+        return true;
+    }
+
+    @Override
+    public ReportWriter open(OutputStream os) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 8192);
+        return new ReportWriter() {
+            @Override
+            public void handle(WorkItem item) throws IOException {
+                writeField(out, "{\"name\":", item.getName());
+                writeField(out, ",\"date\":", item.getDate());
+                writeField(out, ",\"guide\":", item.getGuide());
+                writeField(out, ",\"description\":", item.getDescription());
+                writeField(out, ",\"status\":", item.getStatus());
+                out.write("}\n");
+            }
+
+            @Override
+            public void finish() throws IOException {
+                out.flush();
+            }
+        };
+    }
+
+    private static void writeField(Writer out, String prefix, String value) throws IOException {
+        out.write(prefix);
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        WorkItemJsonWriter.writeEscaped(out, value);
+        out.write('"');
+    }
+}
@@ -0,0 +1,58 @@
+package com.aws.services;
+
+import java.util.Properties;
+
+import javax.mail.Session;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.EnvironmentVariableCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.simpleemail.AmazonSimpleEmailService;
+import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClientBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+//The SES client and the mail session are built once and shared by every email.
+//The client is thread safe and keeps its HTTP connection pool and credentials between sends.
+@Configuration
+public class MailConfig {
+
+    //Setting tracker.mail.ses.endpoint points the client at a local SES stub, which gets dummy credentials
+    @Bean(destroyMethod = "shutdown")
+    public AmazonSimpleEmailService sesClient(@Value("${tracker.mail.ses.region:us-east-1}") String region,
+                                              @Value("${tracker.mail.ses.endpoint:}") String endpoint,
+                                              @Value("${tracker.mail.ses.max-connections:10}") int maxConnections,
+                                              @Value("${tracker.mail.ses.connection-timeout-ms:5000}") int connectionTimeout,
+                                              @Value("${tracker.mail.ses.socket-timeout-ms:30000}") int socketTimeout,
+                                              @Value("${tracker.mail.ses.request-timeout-ms:60000}") int requestTimeout) {
+        ClientConfiguration clientConfig = new ClientConfiguration()
+                .withMaxConnections(maxConnections)
+                .withConnectionTimeout(connectionTimeout)
+                .withSocketTimeout(socketTimeout)
+                .withRequestTimeout(requestTimeout)
+                .withTcpKeepAlive(true);
+
+        AmazonSimpleEmailServiceClientBuilder builder = AmazonSimpleEmailServiceClientBuilder.standard()
+                .withClientConfiguration(clientConfig);
+
+        AWSCredentialsProvider credentials;
+        if (endpoint.isEmpty()) {
+            builder.withRegion(region);
+            credentials = new EnvironmentVariableCredentialsProvider();
+        } else {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region));
+            credentials = new AWSStaticCredentialsProvider(new BasicAWSCredentials("stub", "stub"));
+        }
+        return builder.withCredentials(credentials).build();
+    }
+
+    //Only used to create and encode messages, SES does the sending
+    @Bean
+    public Session mailSession() {
+        return Session.getInstance(new Properties());
+    }
+}
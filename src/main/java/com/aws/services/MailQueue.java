@@ -0,0 +1,376 @@
+package com.aws.services;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+//Outbound queue for report emails.
+//Each message is stored in the queue directory (the attachment plus a .properties file with the
+//recipient and retry state) before it is accepted, and pending messages are picked up again after
+//a restart. Sender threads take messages as they become due and share a token bucket that keeps
+//the SES send rate under tracker.mail.send-rate. Throttling and other transient failures are retried
+//with exponential backoff and full jitter; other failures, or too many attempts, move the message
+//aside as .failed (and its attachment as .att.failed), as do stored files that cannot be read at startup.
+//Failed messages and temporary files left by a crash are deleted once they are older than
+//tracker.mail.failed-retention-hours.
+@Component
+public class MailQueue {
+
+    //Told about the outcome of a message queued in this run
+    public interface Listener {
+        void delivered();
+
+        void failed(String error);
+    }
+
+    private final File queueDir;
+    private final int senders;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long retentionMillis;
+    private final TokenBucket bucket;
+
+    private final DelayQueue<Pending> queue = new DelayQueue<Pending>();
+    private final Map<String, Listener> listeners = new ConcurrentHashMap<String, Listener>();
+    private Thread[] threads;
+    private volatile boolean running;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder sendNanos = new LongAdder();
+    private final AtomicLong maxSendNanos = new AtomicLong();
+    private final LongAdder waitMillis = new LongAdder();
+
+    private final SendMessages sm;
+
+    public MailQueue(SendMessages sm,
+                     @Value("${tracker.mail.queue-dir:${java.io.tmpdir}/tracker-mail}") String queueDir,
+                     @Value("${tracker.mail.senders:2}") int senders,
+                     @Value("${tracker.mail.send-rate:14}") double sendRate,
+                     @Value("${tracker.mail.burst:14}") int burst,
+                     @Value("${tracker.mail.max-attempts:8}") int maxAttempts,
+                     @Value("${tracker.mail.initial-backoff-ms:1000}") long initialBackoffMillis,
+                     @Value("${tracker.mail.max-backoff-ms:300000}") long maxBackoffMillis,
+                     @Value("${tracker.mail.failed-retention-hours:168}") long retentionHours) {
+        this.sm = sm;
+        this.queueDir = new File(queueDir);
+        this.senders = senders;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+        this.bucket = new TokenBucket(sendRate, burst);
+    }
+
+    //Loads the messages left by the previous run and starts the senders
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(queueDir.toPath());
+        removeExpired();
+        File[] stored = queueDir.listFiles((dir, name) -> name.endsWith(".properties"));
+        if (stored != null) {
+            for (File file : stored) {
+                try {
+                    queue.add(load(file));
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                    failed.increment();
+                    moveToFailed(idOf(file));
+                }
+            }
+        }
+
+        running = true;
+        threads = new Thread[senders];
+        for (int i = 0; i < senders; i++) {
+            threads[i] = new Thread(this::run, "mail-sender-" + (i + 1));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (threads != null) {
+            for (Thread thread : threads)
+                thread.interrupt();
+        }
+    }
+
+    //Takes over the report file and queues it for the recipient. The file is moved into the queue
+    //directory, so the caller must not use or delete it afterwards.
+    public String enqueue(File report, String contentType, String fileName, String email, Listener listener) throws IOException {
+        String id = UUID.randomUUID().toString();
+        File attachment = new File(queueDir, id + ".att");
+        Files.move(report.toPath(), attachment.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        Pending pending = new Pending(id, email, contentType, fileName, System.currentTimeMillis());
+        try {
+            save(pending);
+        } catch (IOException e) {
+            attachment.delete();
+            throw e;
+        }
+        if (listener != null)
+            listeners.put(id, listener);
+        queue.add(pending);
+        return id;
+    }
+
+    public int getDepth() {
+        return queue.size();
+    }
+
+    private void run() {
+        while (running) {
+            Pending pending;
+            try {
+                pending = queue.take();
+                bucket.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (pending.attempts == 0)
+                waitMillis.add(System.currentTimeMillis() - pending.enqueued);
+            send(pending);
+        }
+    }
+
+    private void send(Pending pending) {
+        long start = System.nanoTime();
+        try {
+            sm.deliver(attachmentOf(pending.id), pending.contentType, pending.fileName, pending.email);
+            long elapsed = System.nanoTime() - start;
+            sendNanos.add(elapsed);
+            maxSendNanos.accumulateAndGet(elapsed, Math::max);
+            sent.increment();
+            remove(pending);
+            Listener listener = listeners.remove(pending.id);
+            if (listener != null)
+                listener.delivered();
+        } catch (Exception e) {
+            pending.attempts++;
+            if (isRetryable(e) && pending.attempts < maxAttempts) {
+                retries.increment();
+                pending.due = System.currentTimeMillis() + backoff(pending.attempts);
+                try {
+                    save(pending);
+                } catch (IOException io) {
+                    io.printStackTrace();
+                }
+                queue.add(pending);
+            } else {
+                e.printStackTrace();
+                failed.increment();
+                moveToFailed(pending.id);
+                Listener listener = listeners.remove(pending.id);
+                if (listener != null)
+                    listener.failed(e.getMessage());
+            }
+        }
+    }
+
+    //Throttling, server errors and client side (network) errors are worth another try.
+    //Rejected messages, bad addresses and missing attachments are not.
+    private boolean isRetryable(Exception e) {
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException ase = (AmazonServiceException) e;
+            if (RetryUtils.isThrottlingException(ase)) {
+                throttled.increment();
+                return true;
+            }
+            return RetryUtils.isRetryableServiceException(ase) || ase.getStatusCode() >= 500;
+        }
+        return e instanceof AmazonClientException;
+    }
+
+    //Full jitter: a random delay up to the exponential backoff for the attempt
+    private long backoff(int attempts) {
+        long ceiling = initialBackoffMillis << Math.min(attempts - 1, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis)
+            ceiling = maxBackoffMillis;
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private File attachmentOf(String id) {
+        return new File(queueDir, id + ".att");
+    }
+
+    private File propertiesOf(String id) {
+        return new File(queueDir, id + ".properties");
+    }
+
+    private static String idOf(File properties) {
+        String name = properties.getName();
+        return name.substring(0, name.length() - ".properties".length());
+    }
+
+    //Written to a temporary file and moved into place, so a crash never leaves half a file
+    private void save(Pending pending) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("email", pending.email);
+        p.setProperty("contentType", pending.contentType);
+        p.setProperty("fileName", pending.fileName);
+        p.setProperty("enqueued", Long.toString(pending.enqueued));
+        p.setProperty("attempts", Integer.toString(pending.attempts));
+        p.setProperty("due", Long.toString(pending.due));
+
+        File tmp = new File(queueDir, pending.id + ".tmp");
+        try (OutputStream os = new FileOutputStream(tmp)) {
+            p.store(os, null);
+        }
+        Files.move(tmp.toPath(), propertiesOf(pending.id).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Pending load(File file) throws IOException {
+        Properties p = new Properties();
+        try (InputStream is = new FileInputStream(file)) {
+            p.load(is);
+        }
+        Pending pending = new Pending(idOf(file), required(p, "email", file), required(p, "contentType", file),
+                required(p, "fileName", file), Long.parseLong(required(p, "enqueued", file)));
+        pending.attempts = Integer.parseInt(required(p, "attempts", file));
+        pending.due = Long.parseLong(required(p, "due", file));
+        return pending;
+    }
+
+    private static String required(Properties p, String key, File file) throws IOException {
+        String value = p.getProperty(key);
+        if (value == null)
+            throw new IOException(file + " has no " + key);
+        return value;
+    }
+
+    private void remove(Pending pending) {
+        propertiesOf(pending.id).delete();
+        attachmentOf(pending.id).delete();
+    }
+
+    //Keeps the message and its attachment for inspection until they are older than the retention
+    private void moveToFailed(String id) {
+        long now = System.currentTimeMillis();
+        File properties = new File(queueDir, id + ".failed");
+        File attachment = new File(queueDir, id + ".att.failed");
+        if (propertiesOf(id).renameTo(properties))
+            properties.setLastModified(now);
+        if (attachmentOf(id).renameTo(attachment))
+            attachment.setLastModified(now);
+        removeExpired();
+    }
+
+    //Deletes failed messages, and temporary files a crash left behind, older than the retention
+    private void removeExpired() {
+        File[] stale = queueDir.listFiles((dir, name) -> name.endsWith(".failed") || name.endsWith(".tmp"));
+        if (stale == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        for (File file : stale) {
+            if (file.lastModified() + retentionMillis < now)
+                file.delete();
+        }
+    }
+
+    @Override
+    public String toString() {
+        long count = sent.sum();
+        return String.format("mail.queueDepth=%d%nmail.sent=%d%nmail.retries=%d%nmail.throttled=%d%nmail.failed=%d%n"
+                        + "mail.avgSendMillis=%.1f%nmail.maxSendMillis=%.1f%nmail.avgQueueWaitMillis=%.1f%n",
+                getDepth(), count, retries.sum(), throttled.sum(), failed.sum(),
+                count == 0 ? 0 : sendNanos.sum() / 1e6 / count, maxSendNanos.get() / 1e6,
+                count == 0 ? 0 : waitMillis.sum() / (double) count);
+    }
+
+    //A stored message. attempts and due are only changed by the sender holding it.
+    private static class Pending implements Delayed {
+
+        private final String id;
+        private final String email;
+        private final String contentType;
+        private final String fileName;
+        private final long enqueued;
+        private volatile int attempts;
+        private volatile long due;
+
+        private Pending(String id, String email, String contentType, String fileName, long enqueued) {
+            this.id = id;
+            this.email = email;
+            this.contentType = contentType;
+            this.fileName = fileName;
+            this.enqueued = enqueued;
+            this.due = enqueued;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(due - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(due, ((Pending) other).due);
+        }
+    }
+
+    //Allows rate sends per second on average with bursts of up to capacity
+    private static class TokenBucket {
+
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilled = System.nanoTime();
+
+        private TokenBucket(double ratePerSecond, int capacity) {
+            this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, capacity);
+            this.tokens = this.capacity;
+        }
+
+        //Blocks until a token is available and takes it
+        void acquire() throws InterruptedException {
+            while (true) {
+                long waitNanos;
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    tokens = Math.min(capacity, tokens + (now - refilled) * ratePerNano);
+                    refilled = now;
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        return;
+                    }
+                    waitNanos = (long) Math.ceil((1 - tokens) / ratePerNano);
+                }
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+    }
+}
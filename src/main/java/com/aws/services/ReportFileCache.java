@@ -0,0 +1,311 @@
+package com.aws.services;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PreDestroy;
+
+import com.aws.jdbc.RetrieveItems;
+import com.aws.jdbc.WorkItemsChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+//Report files for /report/download kept on disk per user and format, so repeated and resumed
+//downloads are served from the same file. A file is dropped when the items of the user change,
+//when it is older than the TTL or when the least recently used file has to make room.
+//Files are generated and compressed outside the lock; a file whose user was invalidated while
+//it was being generated is served once and then deleted.
+@Component
+public class ReportFileCache {
+
+    private final int maxFiles;
+    private final long ttlNanos;
+    private final File spoolDir;
+    private final AtomicLong sequence = new AtomicLong();
+
+    //Least recently used entry first
+    private final LinkedHashMap<Key, Entry> entries;
+
+    //Files being generated - a file is only cached if its user was not invalidated since it started
+    private final Map<Key, Object> pending = new HashMap<Key, Object>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final RetrieveItems ri;
+
+    public ReportFileCache(RetrieveItems ri,
+                           @Value("${tracker.report.download.max-files:100}") int maxFiles,
+                           @Value("${tracker.report.download.ttl-seconds:600}") long ttlSeconds,
+                           @Value("${tracker.report.spool-dir:}") String spoolDir) {
+        this.ri = ri;
+        this.maxFiles = maxFiles;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.spoolDir = spoolDir.isEmpty() ? null : new File(spoolDir);
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > ReportFileCache.this.maxFiles) {
+                    eldest.getValue().delete();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //Opens the report of the active items of the user, generating it when there is no current copy.
+    //With gzip the compressed variant is opened. The caller closes the returned download.
+    public Download open(String username, ReportFormat format, boolean gzip) throws IOException, SQLException {
+        while (true) {
+            Download download = tryOpen(new Key(username, format.getName()), format, gzip);
+            if (download != null)
+                return download;
+        }
+    }
+
+    //Returns null when the cached file was evicted before it could be opened
+    private Download tryOpen(Key key, ReportFormat format, boolean gzip) throws IOException, SQLException {
+        Entry entry;
+        Object load = null;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.created > ttlNanos) {
+                entries.remove(key);
+                entry.delete();
+                entry = null;
+            }
+            if (entry == null) {
+                load = new Object();
+                pending.put(key, load);
+            }
+        }
+
+        try {
+            return open(key, entry, load, format, gzip);
+        } finally {
+            if (load != null) {
+                synchronized (this) {
+                    if (pending.get(key) == load)
+                        pending.remove(key);
+                }
+            }
+        }
+    }
+
+    //Generates the file when entry is null, then opens it and caches it if load is still pending
+    private Download open(Key key, Entry entry, Object load, ReportFormat format, boolean gzip) throws IOException, SQLException {
+        if (entry == null) {
+            misses.increment();
+            entry = generate(format, key.username);
+        } else {
+            hits.increment();
+        }
+
+        if (gzip && entry.gzipFile == null) {
+            try {
+                compress(entry);
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (!entry.isCurrent())
+                        return null;
+                }
+                throw e;
+            }
+        }
+
+        synchronized (this) {
+            if (!entry.isCurrent())
+                return null;
+
+            boolean cached = entries.get(key) == entry;
+            if (!cached && load != null && pending.get(key) == load) {
+                entries.put(key, entry);
+                cached = true;
+            }
+
+            //Opened under the lock so the file cannot be deleted before it is open;
+            //an open file can still be read after an eviction deletes it
+            File file = gzip ? entry.gzipFile : entry.file;
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            Download download = new Download(channel, gzip ? entry.gzipEtag : entry.etag, entry.lastModified);
+            if (!cached)
+                entry.delete();
+            return download;
+        }
+    }
+
+    //Drops the report files of a user
+    public synchronized void invalidate(String username) {
+        pending.keySet().removeIf(key -> key.username.equals(username));
+        for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().username.equals(username)) {
+                e.getValue().delete();
+                it.remove();
+            }
+        }
+    }
+
+    @EventListener
+    @Order(WorkItemsChangedEvent.DERIVED_ORDER)
+    public void onItemsChanged(WorkItemsChangedEvent event) {
+        invalidate(event.getUsername());
+    }
+
+    @PreDestroy
+    public synchronized void clear() {
+        for (Entry entry : entries.values())
+            entry.delete();
+        entries.clear();
+    }
+
+    private Entry generate(ReportFormat format, String username) throws IOException, SQLException {
+        File file = File.createTempFile("download", "-" + format.getFileName(), spoolDir);
+        try {
+            try (OutputStream os = new FileOutputStream(file);
+                 ReportWriter writer = format.open(os)) {
+                ri.streamItems(username, false, writer);
+                writer.finish();
+            }
+            return new Entry(file, sequence.incrementAndGet());
+        } catch (IOException | SQLException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    private void compress(Entry entry) throws IOException {
+        File gzipFile = File.createTempFile("download", entry.file.getName() + ".gz", spoolDir);
+        try (FileChannel in = FileChannel.open(entry.file.toPath(), StandardOpenOption.READ);
+             GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(gzipFile), 65536)) {
+            in.transferTo(0, in.size(), Channels.newChannel(out));
+        } catch (IOException e) {
+            gzipFile.delete();
+            throw e;
+        }
+
+        synchronized (this) {
+            if (entry.gzipFile == null && entry.isCurrent())
+                entry.gzipFile = gzipFile;
+            else
+                gzipFile.delete();
+        }
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("reportFiles.size=%d%nreportFiles.hits=%d%nreportFiles.misses=%d%n",
+                getSize(), hits.sum(), misses.sum());
+    }
+
+    //An open report file with the validators of its representation
+    public static class Download implements Closeable {
+
+        private final FileChannel channel;
+        private final String etag;
+        private final long lastModified;
+
+        private Download(FileChannel channel, String etag, long lastModified) {
+            this.channel = channel;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public FileChannel getChannel() {
+            return channel;
+        }
+
+        public long getLength() throws IOException {
+            return channel.size();
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    //Guarded by the cache lock except for the final fields and the gzipFile check before compressing
+    private static class Entry {
+
+        private final File file;
+        private final String etag;
+        private final String gzipEtag;
+        private final long lastModified = System.currentTimeMillis();
+        private final long created = System.nanoTime();
+        private volatile File gzipFile;
+        private boolean deleted;
+
+        private Entry(File file, long sequence) {
+            this.file = file;
+            this.etag = "\"r" + Long.toHexString(lastModified) + "-" + sequence + "\"";
+            this.gzipEtag = "\"r" + Long.toHexString(lastModified) + "-" + sequence + "-gzip\"";
+        }
+
+        private boolean isCurrent() {
+            return !deleted;
+        }
+
+        private void delete() {
+            deleted = true;
+            file.delete();
+            if (gzipFile != null)
+                gzipFile.delete();
+        }
+    }
+
+    private static class Key {
+
+        private final String username;
+        private final String format;
+
+        private Key(String username, String format) {
+            this.username = username;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return username.equals(other.username) && format.equals(other.format);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(username, format);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.aws.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+//A file format the work item report can be produced in. Formats are components
+//and are looked up by name through ReportFormats.
+public interface ReportFormat {
+
+    //Name used in the format parameter, for example csv
+    String getName();
+
+    String getContentType();
+
+    //Name of the report file sent to the user
+    String getFileName();
+
+    //Whether gzip makes the report noticeably smaller; zip based formats are already compressed
+    boolean isCompressible();
+
+    //Whether finish() builds the whole report from the handled items, as the workbook formats do,
+    //instead of the items being written out as they are handled
+    default boolean isBuiltAtFinish() {
+        return false;
+    }
+
+    //Starts a report written to the stream
+    ReportWriter open(OutputStream os) throws IOException;
+}
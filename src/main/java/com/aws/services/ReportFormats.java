@@ -0,0 +1,37 @@
+package com.aws.services;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+//Finds the report formats by name
+@Component
+public class ReportFormats {
+
+    private final Map<String, ReportFormat> formats = new TreeMap<String, ReportFormat>(String.CASE_INSENSITIVE_ORDER);
+    private final ReportFormat defaultFormat;
+
+    public ReportFormats(List<ReportFormat> formats,
+                         @Value("${tracker.report.default-format:xlsx}") String defaultFormat) {
+        for (ReportFormat format : formats)
+            this.formats.put(format.getName(), format);
+        this.defaultFormat = this.formats.get(defaultFormat);
+        if (this.defaultFormat == null)
+            throw new IllegalArgumentException("Unknown report format " + defaultFormat);
+    }
+
+    //Returns the named format, the default one when name is null, or null for an unknown name
+    public ReportFormat get(String name) {
+        if (name == null || name.isEmpty())
+            return defaultFormat;
+        return formats.get(name);
+    }
+
+    public Map<String, ReportFormat> getFormats() {
+        return Collections.unmodifiableMap(formats);
+    }
+}
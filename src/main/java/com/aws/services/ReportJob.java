@@ -0,0 +1,90 @@
+package com.aws.services;
+
+//Progress of one queued report. The fields are written by the worker thread and read by status requests.
+public class ReportJob {
+
+    public enum State { QUEUED, QUERYING, RENDERING, SENDING, DONE, FAILED }
+
+    private final String id;
+    private final String username;
+    private final String email;
+    private final ReportFormat format;
+    private final long submitted;
+    private volatile State state = State.QUEUED;
+    private volatile int items = -1;
+    private volatile String error;
+    private volatile long finished;
+
+    ReportJob(String id, String username, String email, ReportFormat format) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.format = format;
+        this.submitted = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getFormat() {
+        return format.getName();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    //Number of items in the report, -1 until they have been read
+    public int getItems() {
+        return items;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    //Completion time in milliseconds since the epoch, 0 while the job is queued or running
+    public long getFinished() {
+        return finished;
+    }
+
+    String username() {
+        return username;
+    }
+
+    ReportFormat format() {
+        return format;
+    }
+
+    boolean isFinished() {
+        return state == State.DONE || state == State.FAILED;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void setItems(int items) {
+        this.items = items;
+    }
+
+    void done() {
+        finished = System.currentTimeMillis();
+        state = State.DONE;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        finished = System.currentTimeMillis();
+        state = State.FAILED;
+    }
+}
@@ -0,0 +1,158 @@
+package com.aws.services;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import com.aws.jdbc.RetrieveItems;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+//Builds reports on a small pool of worker threads so /report returns at once, then hands them to the MailQueue.
+//Jobs wait in a bounded queue; when it is full submit throws RejectedExecutionException
+//and the caller is asked to retry later. Finished jobs are kept for status requests
+//until they are older than the retention time.
+@Component
+public class ReportJobService {
+
+    private final ThreadPoolExecutor executor;
+    private final long retentionMillis;
+    private final File spoolDir;
+    private final ConcurrentHashMap<String, ReportJob> jobs = new ConcurrentHashMap<String, ReportJob>();
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private final RetrieveItems ri;
+    private final MailQueue mailQueue;
+
+    public ReportJobService(RetrieveItems ri, MailQueue mailQueue,
+                            @Value("${tracker.report.workers:2}") int workers,
+                            @Value("${tracker.report.queue-capacity:50}") int queueCapacity,
+                            @Value("${tracker.report.retention-minutes:60}") long retentionMinutes,
+                            @Value("${tracker.report.spool-dir:}") String spoolDir) {
+        this.ri = ri;
+        this.mailQueue = mailQueue;
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+        this.spoolDir = spoolDir.isEmpty() ? null : new File(spoolDir);
+        this.executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new WorkerFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    //Queue a report of the active items of the user, to be mailed to the address
+    public ReportJob submit(String username, String email, ReportFormat format) {
+        removeExpired();
+
+        ReportJob job = new ReportJob(UUID.randomUUID().toString(), username, email, format);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            rejected.increment();
+            throw e;
+        }
+        return job;
+    }
+
+    //Returns the job if it exists and belongs to the user
+    public ReportJob getJob(String id, String username) {
+        ReportJob job = id == null ? null : jobs.get(id);
+        if (job == null || !job.username().equals(username))
+            return null;
+        return job;
+    }
+
+    private void run(ReportJob job) {
+        ReportFormat format = job.format();
+        File report = null;
+        try {
+            //Rows go from the result set straight into the report file
+            job.setState(ReportJob.State.QUERYING);
+            report = File.createTempFile("report", "-" + format.getFileName(), spoolDir);
+            try (OutputStream os = new FileOutputStream(report);
+                 ReportWriter writer = format.open(os)) {
+                job.setItems(ri.streamItems(job.username(), false, writer));
+
+                job.setState(ReportJob.State.RENDERING);
+                writer.finish();
+            }
+
+            //The mail queue owns the file from here and reports back once the email is sent or given up on
+            job.setState(ReportJob.State.SENDING);
+            mailQueue.enqueue(report, format.getContentType(), format.getFileName(), job.getEmail(), new MailQueue.Listener() {
+                @Override
+                public void delivered() {
+                    job.done();
+                    completed.increment();
+                }
+
+                @Override
+                public void failed(String error) {
+                    fail(job, error);
+                }
+            });
+            report = null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail(job, e.getMessage());
+        } finally {
+            if (report != null)
+                report.delete();
+        }
+    }
+
+    private void fail(ReportJob job, String error) {
+        job.fail(error);
+        failed.increment();
+    }
+
+    private void removeExpired() {
+        long oldest = System.currentTimeMillis() - retentionMillis;
+        for (Iterator<ReportJob> it = jobs.values().iterator(); it.hasNext(); ) {
+            ReportJob job = it.next();
+            if (job.isFinished() && job.getFinished() < oldest)
+                it.remove();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("reportJobs.queued=%d%nreportJobs.active=%d%nreportJobs.completed=%d%n"
+                        + "reportJobs.failed=%d%nreportJobs.rejected=%d%n",
+                executor.getQueue().size(), executor.getActiveCount(), completed.sum(),
+                failed.sum(), rejected.sum());
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "report-worker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.aws.services;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+//Reports too large to attach to an email are kept here and the email carries a link instead.
+//Each report is stored under a random 128 bit token that is the only credential for the link,
+//and is removed once it is older than tracker.report.link-ttl-hours.
+@Component
+public class ReportLinks {
+
+    private static final Pattern TOKEN = Pattern.compile("[0-9a-f]{32}");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File linkDir;
+    private final long ttlMillis;
+    private final String baseUrl;
+    private final SecureRandom random = new SecureRandom();
+
+    public ReportLinks(@Value("${tracker.report.link-dir:${java.io.tmpdir}/tracker-links}") String linkDir,
+                       @Value("${tracker.report.link-ttl-hours:168}") long ttlHours,
+                       @Value("${tracker.report.link-base-url:http://localhost:8080}") String baseUrl) {
+        this.linkDir = new File(linkDir);
+        this.ttlMillis = TimeUnit.HOURS.toMillis(ttlHours);
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    @PostConstruct
+    public void createDirectory() throws IOException {
+        Files.createDirectories(linkDir.toPath());
+    }
+
+    //Copies the report into the store and returns the URL it can be downloaded from
+    public String store(File report, String contentType, String fileName) throws IOException {
+        removeExpired();
+
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        char[] token = new char[32];
+        for (int i = 0; i < bytes.length; i++) {
+            token[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            token[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        String id = new String(token);
+
+        Files.copy(report.toPath(), dataOf(id).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Properties p = new Properties();
+        p.setProperty("contentType", contentType);
+        p.setProperty("fileName", fileName);
+        p.setProperty("expires", Long.toString(System.currentTimeMillis() + ttlMillis));
+        try (OutputStream os = new FileOutputStream(propertiesOf(id))) {
+            p.store(os, null);
+        } catch (IOException e) {
+            dataOf(id).delete();
+            throw e;
+        }
+        return baseUrl + "/report/shared/" + id;
+    }
+
+    //Returns the stored report, or null for an unknown or expired token
+    public StoredReport open(String token) throws IOException {
+        if (token == null || !TOKEN.matcher(token).matches())
+            return null;
+
+        File properties = propertiesOf(token);
+        File data = dataOf(token);
+        if (!properties.isFile() || !data.isFile())
+            return null;
+
+        Properties p = new Properties();
+        try (InputStream is = new FileInputStream(properties)) {
+            p.load(is);
+        }
+        if (Long.parseLong(p.getProperty("expires")) < System.currentTimeMillis())
+            return null;
+        return new StoredReport(data, p.getProperty("contentType"), p.getProperty("fileName"));
+    }
+
+    private void removeExpired() {
+        File[] stored = linkDir.listFiles((dir, name) -> name.endsWith(".properties"));
+        if (stored == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        for (File file : stored) {
+            if (file.lastModified() + ttlMillis < now) {
+                String name = file.getName();
+                dataOf(name.substring(0, name.length() - ".properties".length())).delete();
+                file.delete();
+            }
+        }
+    }
+
+    private File dataOf(String token) {
+        return new File(linkDir, token + ".dat");
+    }
+
+    private File propertiesOf(String token) {
+        return new File(linkDir, token + ".properties");
+    }
+
+    public static class StoredReport {
+
+        private final File file;
+        private final String contentType;
+        private final String fileName;
+
+        private StoredReport(File file, String contentType, String fileName) {
+            this.file = file;
+            this.contentType = contentType;
+            this.fileName = fileName;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.aws.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.aws.jdbc.WorkItemHandler;
+
+//Writes one report: the items are handled in report order and finish() completes the output
+public interface ReportWriter extends WorkItemHandler, Closeable {
+
+    //Writes whatever is still pending and flushes it. The stream the writer was opened on is not closed.
+    void finish() throws IOException;
+
+    //Releases temporary resources of an unfinished report
+    @Override
+    default void close() throws IOException {
+    }
+}
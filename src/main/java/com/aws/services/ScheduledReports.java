@@ -0,0 +1,461 @@
+package com.aws.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import com.aws.entities.WorkItem;
+import com.aws.jdbc.RetrieveItems;
+import com.aws.jdbc.WorkItemHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+//Mails every user a report of their active items on the tracker.schedule.cron schedule.
+//The active items of all users are read with one query ordered by username. The reading thread writes
+//the rows of each user to a spool file of their own and, when the next user's rows start, hands the
+//closed file to one of tracker.schedule.concurrency render threads, which writes the report from it
+//and passes it to the MailQueue. The reading thread never waits for a render thread, so the connection
+//is only held while the rows are read, and no item list is held in memory.
+//The workbook formats build the whole report in finish() and are heavy on CPU and memory, so their
+//spool files are only handed over once the query has finished.
+//A user is mailed at tracker.schedule.recipients.<username>, or at the username when it is an
+//email address; other users are skipped.
+@Component
+public class ScheduledReports {
+
+    private static final String RECIPIENT_PREFIX = "tracker.schedule.recipients.";
+
+    //Failure messages kept per run, the counts include all of them
+    private static final int MAX_FAILURES = 20;
+
+    private final boolean enabled;
+    private final File spoolDir;
+    private final ThreadPoolExecutor executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ReportFormat format;
+
+    private volatile Run lastRun;
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder overlapped = new LongAdder();
+
+    private final RetrieveItems ri;
+    private final MailQueue mailQueue;
+    private final Environment environment;
+
+    public ScheduledReports(RetrieveItems ri, MailQueue mailQueue, ReportFormats formats, Environment environment,
+                            @Value("${tracker.schedule.enabled:false}") boolean enabled,
+                            @Value("${tracker.schedule.concurrency:4}") int concurrency,
+                            @Value("${tracker.schedule.format:}") String formatName,
+                            @Value("${tracker.report.spool-dir:}") String spoolDir) {
+        this.ri = ri;
+        this.mailQueue = mailQueue;
+        this.environment = environment;
+        this.format = formats.get(formatName);
+        if (this.format == null)
+            throw new IllegalArgumentException("Unknown report format " + formatName);
+        this.enabled = enabled;
+        this.spoolDir = spoolDir.isEmpty() ? null : new File(spoolDir);
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), r -> {
+                    Thread t = new Thread(r, "scheduled-report-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Scheduled(cron = "${tracker.schedule.cron:0 0 7 * * MON}")
+    public void runScheduled() {
+        if (enabled)
+            run();
+    }
+
+    //Generates and queues the reports of all users. Returns the summary of the run, or null when
+    //the previous run is still going.
+    public Run run() {
+        if (!running.compareAndSet(false, true)) {
+            overlapped.increment();
+            return null;
+        }
+
+        Run run = new Run();
+        Semaphore rendered = new Semaphore(0);
+        Splitter splitter = new Splitter(run, rendered);
+        try {
+            try {
+                ri.streamAllActiveItems(splitter);
+                splitter.endUser();
+            } catch (Exception e) {
+                e.printStackTrace();
+                splitter.discard();
+                run.failed("query", e.getMessage());
+            }
+            run.queryMillis = (System.nanoTime() - run.startNanos) / 1000000;
+            splitter.submitDeferred();
+
+            //Every submitted report releases one permit once it has been rendered
+            rendered.acquireUninterruptibly(splitter.submitted);
+        } finally {
+            run.millis = (System.nanoTime() - run.startNanos) / 1000000;
+            lastRun = run;
+            runs.increment();
+            running.set(false);
+        }
+        return run;
+    }
+
+    //Returns the address to mail the user's report to, or null when the user has none
+    private String recipientOf(String username) {
+        String email = environment.getProperty(RECIPIENT_PREFIX + username);
+        if (email != null && !email.isEmpty())
+            return email;
+        return username.indexOf('@') > 0 ? username : null;
+    }
+
+    private void render(Spool spool, Run run) {
+        long start = System.nanoTime();
+        File report = null;
+        try {
+            report = File.createTempFile("scheduled", "-" + format.getFileName(), spoolDir);
+            try (OutputStream os = new FileOutputStream(report);
+                 ReportWriter writer = format.open(os)) {
+                spool.readTo(writer);
+                writer.finish();
+            }
+
+            mailQueue.enqueue(report, format.getContentType(), format.getFileName(), spool.email, new MailQueue.Listener() {
+                @Override
+                public void delivered() {
+                    run.delivered.incrementAndGet();
+                }
+
+                @Override
+                public void failed(String error) {
+                    run.undelivered.incrementAndGet();
+                    run.addFailure(spool.username + ": " + error);
+                }
+            });
+            report = null;
+            run.rendered(System.nanoTime() - start);
+        } catch (Exception e) {
+            e.printStackTrace();
+            run.failed(spool.username, e.getMessage());
+        } finally {
+            spool.delete();
+            if (report != null)
+                report.delete();
+        }
+    }
+
+    public Run getLastRun() {
+        return lastRun;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        Run run = lastRun;
+        return String.format("schedule.runs=%d%nschedule.overlapped=%d%nschedule.running=%b%n",
+                runs.sum(), overlapped.sum(), running.get()) + (run == null ? "" : run.toString());
+    }
+
+    //Splits the rows of the query, which come grouped by username, into one spool file per user
+    private class Splitter implements WorkItemHandler {
+
+        private final Run run;
+        private final Semaphore rendered;
+        private final List<Spool> deferred = new ArrayList<Spool>();
+        private int submitted;
+        private String username;
+        //null while the rows of a user without a recipient are skipped
+        private Spool spool;
+
+        private Splitter(Run run, Semaphore rendered) {
+            this.run = run;
+            this.rendered = rendered;
+        }
+
+        @Override
+        public void handle(WorkItem item) throws IOException {
+            if (!item.getName().equals(username)) {
+                endUser();
+                startUser(item.getName());
+            }
+            if (spool != null)
+                spool.write(item);
+        }
+
+        private void startUser(String username) throws IOException {
+            this.username = username;
+            run.users.incrementAndGet();
+            String email = recipientOf(username);
+            if (email == null) {
+                run.skipped.incrementAndGet();
+                return;
+            }
+            spool = new Spool(username, email, File.createTempFile("scheduled", ".spool", spoolDir));
+        }
+
+        //Closes the spool file of the current user and hands it to a render thread,
+        //or keeps it for submitDeferred when the format is built at finish
+        private void endUser() throws IOException {
+            if (spool == null)
+                return;
+
+            Spool done = spool;
+            spool = null;
+            try {
+                done.close();
+            } catch (IOException e) {
+                done.delete();
+                throw e;
+            }
+            run.items += done.count;
+            if (format.isBuiltAtFinish())
+                deferred.add(done);
+            else
+                submit(done);
+        }
+
+        //Deletes the spool file of a user whose rows could not all be read
+        private void discard() {
+            if (spool == null)
+                return;
+            try {
+                spool.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            spool.delete();
+            spool = null;
+        }
+
+        private void submitDeferred() {
+            for (Spool done : deferred)
+                submit(done);
+            deferred.clear();
+        }
+
+        private void submit(Spool done) {
+            submitted++;
+            try {
+                executor.execute(() -> {
+                    try {
+                        render(done, run);
+                    } finally {
+                        rendered.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rendered.release();
+                done.delete();
+                run.failed(done.username, "Shutting down");
+            }
+        }
+    }
+
+    //The items of one user in a temporary file. Per item the id and name, the epoch day as an int
+    //and the description, guide and status. A string is written as its UTF-8 length, -1 for null,
+    //followed by the bytes.
+    private static class Spool {
+
+        private final String username;
+        private final String email;
+        private final File file;
+        private final DataOutputStream out;
+        private int count;
+
+        private Spool(String username, String email, File file) throws IOException {
+            this.username = username;
+            this.email = email;
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        }
+
+        private void write(WorkItem item) throws IOException {
+            writeString(item.getId());
+            writeString(item.getName());
+            out.writeInt(item.getEpochDay());
+            writeString(item.getDescription());
+            writeString(item.getGuide());
+            writeString(item.getStatus());
+            count++;
+        }
+
+        private void close() throws IOException {
+            out.close();
+        }
+
+        private void readTo(WorkItemHandler handler) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+                for (int i = 0; i < count; i++) {
+                    handler.handle(WorkItem.builder()
+                            .id(readString(in))
+                            .name(readString(in))
+                            .epochDay(in.readInt())
+                            .description(readString(in))
+                            .guide(readString(in))
+                            .status(readString(in))
+                            .build());
+                }
+            }
+        }
+
+        private void delete() {
+            file.delete();
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0)
+                return null;
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    //Summary of one run. The counters are updated by the render threads and, for delivered and
+    //undelivered, by the mail senders after the run has finished.
+    public static class Run {
+
+        private final long started = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private volatile long queryMillis;
+        private volatile long millis = -1;
+        private volatile int items;
+        private final AtomicInteger users = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger delivered = new AtomicInteger();
+        private final AtomicInteger undelivered = new AtomicInteger();
+        private final LongAdder renderNanos = new LongAdder();
+        private final AtomicLong maxRenderNanos = new AtomicLong();
+        private final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+
+        private void rendered(long nanos) {
+            queued.incrementAndGet();
+            renderNanos.add(nanos);
+            maxRenderNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private void failed(String username, String error) {
+            failed.incrementAndGet();
+            addFailure(username + ": " + error);
+        }
+
+        private void addFailure(String failure) {
+            synchronized (failures) {
+                if (failures.size() < MAX_FAILURES)
+                    failures.add(failure);
+            }
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        //Time spent reading the items into the spool files
+        public long getQueryMillis() {
+            return queryMillis;
+        }
+
+        //Duration of the run until the last report was queued, -1 while it is running
+        public long getMillis() {
+            return millis;
+        }
+
+        public int getUsers() {
+            return users.get();
+        }
+
+        public int getItems() {
+            return items;
+        }
+
+        //Users without a recipient address
+        public int getSkipped() {
+            return skipped.get();
+        }
+
+        public int getQueued() {
+            return queued.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public int getDelivered() {
+            return delivered.get();
+        }
+
+        public int getUndelivered() {
+            return undelivered.get();
+        }
+
+        public List<String> getFailures() {
+            synchronized (failures) {
+                return new ArrayList<String>(failures);
+            }
+        }
+
+        @Override
+        public String toString() {
+            int count = queued.get();
+            StringBuilder failureLines = new StringBuilder();
+            List<String> failures = getFailures();
+            for (int i = 0; i < failures.size(); i++)
+                failureLines.append(String.format("schedule.last.failure.%d=%s%n", i + 1, failures.get(i)));
+            return String.format("schedule.last.started=%s%nschedule.last.millis=%d%nschedule.last.queryMillis=%d%n"
+                            + "schedule.last.users=%d%nschedule.last.items=%d%nschedule.last.skipped=%d%n"
+                            + "schedule.last.queued=%d%nschedule.last.failed=%d%nschedule.last.delivered=%d%n"
+                            + "schedule.last.undelivered=%d%nschedule.last.avgRenderMillis=%.1f%n"
+                            + "schedule.last.maxRenderMillis=%.1f%n",
+                    Instant.ofEpochMilli(started), millis, queryMillis, users.get(), items, skipped.get(),
+                    count, failed.get(), delivered.get(), undelivered.get(),
+                    count == 0 ? 0 : renderNanos.sum() / 1e6 / count, maxRenderNanos.get() / 1e6) + failureLines;
+        }
+    }
+}
@@ -3,39 +3,40 @@ package com.aws.services;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Session;
-import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 import javax.mail.internet.MimeUtility;
 
-import com.amazonaws.auth.EnvironmentVariableCredentialsProvider;
-import com.amazonaws.regions.Regions;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailService;
-import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClientBuilder;
 import com.amazonaws.services.simpleemail.model.RawMessage;
 import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
 import javax.activation.DataHandler;
 import javax.activation.DataSource;
-import javax.mail.util.ByteArrayDataSource;
+import javax.activation.FileDataSource;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.Properties;
-import org.apache.commons.io.IOUtils;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Component("SendMessages")
 public class SendMessages {
 
     // Replace sender@example.com with your "From" address.
     // This address must be verified with Amazon SES.
-    private String SENDER = "scmacdon@amazon.com";
+    private final String SENDER;
 
     // Specify a configuration set. If you do not want to use a configuration
     // set, comment the following variable, and the
@@ -43,117 +44,223 @@ public class SendMessages {
     //private static String CONFIGURATION_SET = "ConfigSet";
 
     // The subject line for the email.
-    private String SUBJECT = "Weekly AWS Status Report";
+    private final String SUBJECT;
 
 
     // The email body for recipients with non-HTML email clients.
-    private String BODY_TEXT = "Hello,\r\n" + "Please see the attached file for a weekly update.";
+    private static final String BODY_TEXT = "Hello,\r\n" + "Please see the attached file for a weekly update.";
 
     // The HTML body of the email.
-    private String BODY_HTML = "<html>" + "<head></head>" + "<body>" + "<h1>Hello!</h1>"
+    private static final String BODY_HTML = "<html>" + "<head></head>" + "<body>" + "<h1>Hello!</h1>"
             + "<p>Please see the attached file for a weekly update.</p>" + "</body>" + "</html>";
 
-    public void SendReport(InputStream is, String emailAddress ) throws IOException {
+    private final AmazonSimpleEmailService client;
+    private final Session session;
+    private final ReportLinks reportLinks;
+    private final long zipThreshold;
+
+    //SES accepts messages up to 10 MB after base64 encoding, which adds a third
+    private final long linkThreshold;
+
+    private final File spoolDir;
+
+    //The text and HTML parts are the same in every email, so they are encoded once.
+    //A body part can only belong to one message, so each email parses its own copy of these bytes.
+    private final byte[] encodedBody;
+
+    public SendMessages(AmazonSimpleEmailService client, Session session, ReportLinks reportLinks,
+                        @Value("${tracker.mail.sender:scmacdon@amazon.com}") String sender,
+                        @Value("${tracker.mail.subject:Weekly AWS Status Report}") String subject,
+                        @Value("${tracker.mail.zip-threshold-bytes:1048576}") long zipThreshold,
+                        @Value("${tracker.mail.link-threshold-bytes:7340032}") long linkThreshold,
+                        @Value("${tracker.report.spool-dir:}") String spoolDir) throws MessagingException, IOException {
+        this.client = client;
+        this.session = session;
+        this.reportLinks = reportLinks;
+        this.SENDER = sender;
+        this.SUBJECT = subject;
+        this.zipThreshold = zipThreshold;
+        this.linkThreshold = linkThreshold;
+        this.spoolDir = spoolDir.isEmpty() ? null : new File(spoolDir);
+        this.encodedBody = encodeBody(session);
+    }
+
+    private static byte[] encodeBody(Session session) throws MessagingException, IOException {
+        MimeBodyPart wrap = createBody(BODY_TEXT, BODY_HTML);
 
-        //Convert the InputStream to a byte[]
-        byte[] fileContent = IOUtils.toByteArray(is);
+        //The part headers (content types and boundaries) are only filled in when a message is saved
+        MimeMessage holder = new MimeMessage(session);
+        MimeMultipart mixed = new MimeMultipart("mixed");
+        mixed.addBodyPart(wrap);
+        holder.setContent(mixed);
+        holder.saveChanges();
 
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        wrap.writeTo(bytes);
+        return bytes.toByteArray();
+    }
+
+    //Mails the report in the file; the attachment is read from the file while the message is written.
+    //Reports over tracker.mail.zip-threshold-bytes are zipped unless the format is compressed already,
+    //and an attachment still over tracker.mail.link-threshold-bytes is replaced by a download link.
+    //Failures are thrown, so MailQueue can retry them.
+    public void deliver(File report, String contentType, String fileName, String emailAddress) throws MessagingException, IOException {
+        File zipped = null;
         try {
-            send(fileContent,emailAddress);
+            File attachment = report;
+            String attachmentType = contentType;
+            String attachmentName = fileName;
+            if (report.length() > zipThreshold && isCompressible(contentType)) {
+                zipped = zip(report, fileName);
+                attachment = zipped;
+                attachmentType = "application/zip";
+                attachmentName = baseName(fileName) + ".zip";
+            }
+
+            if (attachment.length() > linkThreshold) {
+                String url = reportLinks.store(attachment, attachmentType, attachmentName);
+                sendRaw(createMessage(createLinkBody(url), null, null, emailAddress), 0);
+            } else {
+                sendRaw(createMessage(new MimeBodyPart(new ByteArrayInputStream(encodedBody)),
+                        fileSource(attachment, attachmentType), attachmentName, emailAddress), attachment.length());
+            }
+        } finally {
+            if (zipped != null)
+                zipped.delete();
         }
-        catch (Exception e)
-        {
-            e.getStackTrace();
+    }
+
+    //Builds the email with the body and, when fds is not null, the attachment
+    private MimeMessage createMessage(MimeBodyPart body, DataSource fds, String reportName, String emailAddress) throws MessagingException {
+        // Create a new MimeMessage object.
+        MimeMessage message = new MimeMessage(session);
+
+        // Add subject, from and to lines.
+        message.setSubject(SUBJECT, "UTF-8");
+        message.setFrom(new InternetAddress(SENDER));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(emailAddress));
+
+        // Create a multipart/mixed parent container.
+        MimeMultipart msg = new MimeMultipart("mixed");
+
+        // Add the parent container to the message.
+        message.setContent(msg);
+
+        // Add the multipart/alternative part to the message.
+        msg.addBodyPart(body);
+
+        if (fds != null) {
+            // Define the attachment
+            MimeBodyPart att = new MimeBodyPart();
+            att.setDataHandler(new DataHandler(fds));
+            att.setFileName(reportName);
+
+            // Add the attachment to the message.
+            msg.addBodyPart(att);
         }
+        return message;
     }
 
-    public void send(byte[] attachment, String emailAddress) throws AddressException, MessagingException, IOException {
+    //Creates a multipart/alternative wrapper with the text and HTML parts
+    private static MimeBodyPart createBody(String text, String html) throws MessagingException {
+        // Create a multipart/alternative child container.
+        MimeMultipart msg_body = new MimeMultipart("alternative");
 
-        MimeMessage message = null;
-        try {
-            Session session = Session.getDefaultInstance(new Properties());
+        // Create a wrapper for the HTML and text parts.
+        MimeBodyPart wrap = new MimeBodyPart();
 
-            // Create a new MimeMessage object.
-            message = new MimeMessage(session);
+        // Define the text part.
+        MimeBodyPart textPart = new MimeBodyPart();
+        textPart.setContent(text, "text/plain; charset=UTF-8");
 
-            // Add subject, from and to lines.
-            message.setSubject(SUBJECT, "UTF-8");
-            message.setFrom(new InternetAddress(SENDER));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(emailAddress));
+        // Define the HTML part.
+        MimeBodyPart htmlPart = new MimeBodyPart();
+        htmlPart.setContent(html, "text/html; charset=UTF-8");
 
-            // Create a multipart/alternative child container.
-            MimeMultipart msg_body = new MimeMultipart("alternative");
+        // Add the text and HTML parts to the child container.
+        msg_body.addBodyPart(textPart);
+        msg_body.addBodyPart(htmlPart);
 
-            // Create a wrapper for the HTML and text parts.
-            MimeBodyPart wrap = new MimeBodyPart();
+        // Add the child container to the wrapper object.
+        wrap.setContent(msg_body);
+        return wrap;
+    }
 
-            // Define the text part.
-            MimeBodyPart textPart = new MimeBodyPart();
-            textPart.setContent(BODY_TEXT, "text/plain; charset=UTF-8");
+    private static MimeBodyPart createLinkBody(String url) throws MessagingException {
+        String text = "Hello,\r\n" + "The weekly update is too large to attach. You can download it from\r\n" + url;
+        String html = "<html>" + "<head></head>" + "<body>" + "<h1>Hello!</h1>"
+                + "<p>The weekly update is too large to attach. You can download it "
+                + "<a href=\"" + escapeHtml(url) + "\">here</a>.</p>" + "</body>" + "</html>";
+        return createBody(text, html);
+    }
 
-            // Define the HTML part.
-            MimeBodyPart htmlPart = new MimeBodyPart();
-            htmlPart.setContent(BODY_HTML, "text/html; charset=UTF-8");
+    private static String escapeHtml(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
 
-            // Add the text and HTML parts to the child container.
-            msg_body.addBodyPart(textPart);
-            msg_body.addBodyPart(htmlPart);
+    private static DataSource fileSource(File file, String contentType) {
+        return new FileDataSource(file) {
+            @Override
+            public String getContentType() {
+                return contentType;
+            }
+        };
+    }
 
-            // Add the child container to the wrapper object.
-            wrap.setContent(msg_body);
+    //Zip based formats such as xlsx gain nothing from another round of compression
+    private static boolean isCompressible(String contentType) {
+        return !contentType.startsWith("application/zip")
+                && !contentType.startsWith("application/vnd.openxmlformats-officedocument");
+    }
 
-            // Create a multipart/mixed parent container.
-            MimeMultipart msg = new MimeMultipart("mixed");
+    private static String baseName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
 
-            // Add the parent container to the message.
-            message.setContent(msg);
+    private File zip(File report, String fileName) throws IOException {
+        File zipped = File.createTempFile("attachment", ".zip", spoolDir);
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipped), 65536))) {
+            zip.putNextEntry(new ZipEntry(fileName));
+            Files.copy(report.toPath(), zip);
+            zip.closeEntry();
+        } catch (IOException e) {
+            zipped.delete();
+            throw e;
+        }
+        return zipped;
+    }
 
-            // Add the multipart/alternative part to the message.
-            msg.addBodyPart(wrap);
+    //The message is written into one buffer sized for the base64 encoded attachment, and SES gets a view
+    //of that buffer, so the application never holds a second copy of the message.
+    //The SES client (SDK v1) still copies the buffer into a byte array and base64 encodes it for the
+    //request; sending without holding the message in memory needs a client that streams the request body.
+    private void sendRaw(MimeMessage message, long attachmentBytes) throws MessagingException, IOException {
+        MessageBuffer buffer = new MessageBuffer(encodedSize(attachmentBytes));
+        message.writeTo(buffer);
+        RawMessage rawMessage = new RawMessage(buffer.toByteBuffer());
 
-            // Define the attachment
-            MimeBodyPart att = new MimeBodyPart();
-            DataSource fds = new ByteArrayDataSource(attachment, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-            att.setDataHandler(new DataHandler(fds));
+        SendRawEmailRequest rawEmailRequest = new SendRawEmailRequest(rawMessage);
+        // .withConfigurationSetName(CONFIGURATION_SET);
 
-            String reportName = "WorkReport.xls";
-            att.setFileName(reportName);
+        client.sendRawEmail(rawEmailRequest);
+    }
 
-            // Add the attachment to the message.
-            msg.addBodyPart(att);
-        } catch (Exception e) {
-            e.getStackTrace();
+    //Base64 turns 3 bytes into 4 characters in lines of 76 plus CRLF; headers and the body parts fit in 64 KiB
+    private static int encodedSize(long attachmentBytes) {
+        long chars = (attachmentBytes + 2) / 3 * 4;
+        return (int) Math.min(Integer.MAX_VALUE - 8, chars + chars / 76 * 2 + 65536);
+    }
+
+    //Exposes the written bytes without the copy toByteArray makes
+    private static final class MessageBuffer extends ByteArrayOutputStream {
+
+        private MessageBuffer(int size) {
+            super(size);
         }
 
-        // Try to send the email.
-        try {
-            System.out.println("Attempting to send an email through Amazon SES " + "using the AWS SDK for Java...");
-
-            // Instantiate an Amazon SES client, which will make the service
-            // call with the supplied AWS credentials.
-            AmazonSimpleEmailService client = AmazonSimpleEmailServiceClientBuilder.standard()
-                    .withRegion(Regions.US_EAST_1)
-                    .withCredentials(new EnvironmentVariableCredentialsProvider())
-                    .build();
-
-            // Print the raw email content on the console
-
-            // Send the email.
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            assert message != null;
-            message.writeTo(outputStream);
-            RawMessage rawMessage = new RawMessage(ByteBuffer.wrap(outputStream.toByteArray()));
-
-            SendRawEmailRequest rawEmailRequest = new SendRawEmailRequest(rawMessage);
-            // .withConfigurationSetName(CONFIGURATION_SET);
-
-            client.sendRawEmail(rawEmailRequest);
-            System.out.println("Email sent!");
-            // Display an error if something goes wrong.
-        } catch (Exception ex) {
-            System.out.println("Email Failed");
-            System.err.println("Error message: " + ex.getMessage());
-            ex.printStackTrace();
+        private ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
         }
     }
 }
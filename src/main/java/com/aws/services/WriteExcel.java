@@ -1,12 +1,9 @@
 package com.aws.services;
 
-import jxl.CellView;
 import jxl.Workbook;
 import jxl.WorkbookSettings;
 import jxl.format.UnderlineStyle;
-import jxl.write.Formula;
 import jxl.write.Label;
-import jxl.write.Number;
 import jxl.write.WritableCellFormat;
 import jxl.write.WritableFont;
 import jxl.write.WritableSheet;
@@ -14,17 +11,23 @@ import jxl.write.WritableWorkbook;
 import jxl.write.WriteException;
 import jxl.write.biff.RowsExceededException;
 import com.aws.entities.WorkItem;
-import org.springframework.stereotype.Service;
 import org.springframework.stereotype.Component;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Locale;
 
+//Renders the work item report as an .xls workbook.
+//The component holds no state; everything a report needs lives in a ReportSheet,
+//so several reports can be rendered at the same time.
+//jxl keeps the cells of the workbook in memory until it is written, so this format
+//does not stream; the other report formats do.
 @Component
-public class WriteExcel {
+public class WriteExcel implements ReportFormat {
 
-    private WritableCellFormat timesBoldUnderline;
-    private WritableCellFormat times;
+    private static final String[] CAPTIONS = {"Writer", "Date", "Guide", "Description", "Status"};
 
     //Returns an InputStream that represents the Excel Report
     public java.io.InputStream exportExcel( List<WorkItem> list)
@@ -43,130 +46,70 @@ public class WriteExcel {
 
     //Generates the report and returns an inputstream
     public java.io.InputStream write( List<WorkItem> list) throws IOException, WriteException {
-        java.io.OutputStream os = new java.io.ByteArrayOutputStream() ;
-        WorkbookSettings wbSettings = new WorkbookSettings();
-
-        wbSettings.setLocale(new Locale("en", "EN"));
-
-        //Create a Workbook - pass the OutputStream
-        WritableWorkbook workbook = Workbook.createWorkbook(os, wbSettings);
-        workbook.createSheet("Work Item Report", 0);
-        WritableSheet excelSheet = workbook.getSheet(0);
-        createLabel(excelSheet)   ;
-        int size =  createContent(excelSheet, list);
-
-        //Close the workbook
-        workbook.write();
-        workbook.close();
-
-        //Get an inputStram that represents the Report
-        java.io.ByteArrayOutputStream stream = new java.io.ByteArrayOutputStream();
-        stream = (java.io.ByteArrayOutputStream)os;
-        byte[] myBytes = stream.toByteArray();
-        java.io.InputStream is = new java.io.ByteArrayInputStream(myBytes) ;
-
-        return is ;
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        write(list, os);
+        return new ByteArrayInputStream(os.toByteArray());
     }
 
-    //Create Headings in the Excel spreadsheet
-    private void createLabel(WritableSheet sheet)
-            throws WriteException {
-        // Create a times font
-        WritableFont times10pt = new WritableFont(WritableFont.TIMES, 10);
-        // Define the cell format
-        times = new WritableCellFormat(times10pt);
-        // Lets automatically wrap the cells
-        times.setWrap(true);
-
-        // create create a bold font with unterlines
-        WritableFont times10ptBoldUnderline = new WritableFont(WritableFont.TIMES, 10, WritableFont.BOLD, false,
-                UnderlineStyle.SINGLE);
-        timesBoldUnderline = new WritableCellFormat(times10ptBoldUnderline);
-        // Lets automatically wrap the cells
-        timesBoldUnderline.setWrap(true);
-
-        CellView cv = new CellView();
-        cv.setFormat(times);
-        cv.setFormat(timesBoldUnderline);
-        cv.setAutosize(true);
-
-        // Write a few headers
-        addCaption(sheet, 0, 0, "Writer");
-        addCaption(sheet, 1, 0, "Date");
-        addCaption(sheet, 2, 0, "Guide");
-        addCaption(sheet, 3, 0, "Description");
-        addCaption(sheet, 4, 0, "Status");
+    //Generates the report into the stream
+    public void write(List<WorkItem> list, OutputStream os) throws IOException, WriteException {
+        ReportWriter writer = open(os);
+        for (WorkItem item : list)
+            writer.handle(item);
+        writer.finish();
     }
 
-    //Write the Work Item Data to the Excel Report
-    private int createContent(WritableSheet sheet, List<WorkItem> list) throws WriteException,
-            RowsExceededException {
-
-        int size = list.size() ;
-
-        // Add customer data to the Excel report
-        for (int i = 0; i < size; i++) {
-
-            WorkItem wi =  (WorkItem)list.get(i) ;
-
-            //Get tne work item values
-            String name = wi.getName();
-            String guide = wi.getGuide();
-            String date = wi.getDate();
-            String des = wi.getDescription();
-            String status = wi.getStatus();
-
-            // First column
-            addLabel(sheet, 0, i+2, name);
-            // Second column
-            addLabel(sheet, 1, i+2, date);
-
-            // Third column
-            addLabel(sheet, 2, i+2,guide);
-
-            // Forth column
-            addLabel(sheet, 3, i+2, des);
-
-            // Fifth column
-            addLabel(sheet, 4, i+2, status);
-
-        }
+    @Override
+    public String getName() {
+        return "xls";
+    }
 
-        return size;
+    @Override
+    public String getContentType() {
+        return "application/vnd.ms-excel";
     }
 
-    private void addCaption(WritableSheet sheet, int column, int row, String s)
-            throws RowsExceededException, WriteException {
-        Label label;
-        label = new Label(column, row, s, timesBoldUnderline);
+    @Override
+    public String getFileName() {
+        return "WorkReport.xls";
+    }
 
-        int cc = countString(s);
-        sheet.setColumnView(column, cc);
-        sheet.addCell(label);
+    @Override
+    public boolean isCompressible() {
+        return true;
     }
 
-    private void addNumber(WritableSheet sheet, int column, int row,
-                           Integer integer) throws WriteException, RowsExceededException {
-        Number number;
-        number = new Number(column, row, integer, times);
-        sheet.addCell(number);
+    @Override
+    public boolean isBuiltAtFinish() {
+        return true;
     }
 
-    private void addLabel(WritableSheet sheet, int column, int row, String s)
-            throws WriteException, RowsExceededException {
-        Label label;
-        label = new Label(column, row, s, times);
-        int cc = countString(s);
-        if (cc > 200)
-            sheet.setColumnView(column, 150);
-        else
-            sheet.setColumnView(column, cc+6);
+    @Override
+    public ReportWriter open(OutputStream os) throws IOException {
+        WorkbookSettings wbSettings = new WorkbookSettings();
+
+        wbSettings.setLocale(new Locale("en", "EN"));
 
-        sheet.addCell(label);
+        //Create a Workbook - pass the OutputStream
+        WritableWorkbook workbook = Workbook.createWorkbook(os, wbSettings);
+        workbook.createSheet("Work Item Report", 0);
+        try {
+            ReportSheet sheet = new ReportSheet(workbook, workbook.getSheet(0));
+            createLabel(sheet);
+            return sheet;
+        } catch (WriteException e) {
+            throw new IOException(e);
+        }
+    }
 
+    //Create Headings in the Excel spreadsheet
+    private void createLabel(ReportSheet sheet)
+            throws WriteException {
+        for (int column = 0; column < CAPTIONS.length; column++)
+            sheet.addCaption(column, 0, CAPTIONS[column]);
     }
 
-    private int countString (String ss)
+    private static int countString (String ss)
     {
         int count = 0;
         //Counts each character except space
@@ -177,4 +120,93 @@ public class WriteExcel {
         return count;
     }
 
+    //The sheet of one report with its cell formats and column widths.
+    //jxl ties a cell format to the workbook that first uses it, so the formats are created
+    //once per workbook here and shared by all of its cells. Column widths are collected
+    //while cells are added and set once at the end.
+    private static class ReportSheet implements ReportWriter {
+
+        private final WritableWorkbook workbook;
+        private final WritableSheet sheet;
+        private final WritableCellFormat times;
+        private final WritableCellFormat timesBoldUnderline;
+        private final int[] widths = new int[CAPTIONS.length];
+        private int row = 2;
+
+        ReportSheet(WritableWorkbook workbook, WritableSheet sheet) throws WriteException {
+            this.workbook = workbook;
+            this.sheet = sheet;
+
+            // Create a times font
+            WritableFont times10pt = new WritableFont(WritableFont.TIMES, 10);
+            // Define the cell format
+            times = new WritableCellFormat(times10pt);
+            // Lets automatically wrap the cells
+            times.setWrap(true);
+
+            // create create a bold font with unterlines
+            WritableFont times10ptBoldUnderline = new WritableFont(WritableFont.TIMES, 10, WritableFont.BOLD, false,
+                    UnderlineStyle.SINGLE);
+            timesBoldUnderline = new WritableCellFormat(times10ptBoldUnderline);
+            // Lets automatically wrap the cells
+            timesBoldUnderline.setWrap(true);
+        }
+
+        //Write the Work Item Data to the Excel Report
+        @Override
+        public void handle(WorkItem wi) throws IOException {
+            try {
+                // First column
+                addLabel(0, row, wi.getName());
+                // Second column
+                addLabel(1, row, wi.getDate());
+
+                // Third column
+                addLabel(2, row, wi.getGuide());
+
+                // Forth column
+                addLabel(3, row, wi.getDescription());
+
+                // Fifth column
+                addLabel(4, row, wi.getStatus());
+            } catch (WriteException e) {
+                throw new IOException(e);
+            }
+            row++;
+        }
+
+        //Sets the column widths and writes the workbook
+        @Override
+        public void finish() throws IOException {
+            applyColumnWidths();
+            workbook.write();
+            try {
+                workbook.close();
+            } catch (WriteException e) {
+                throw new IOException(e);
+            }
+        }
+
+        void addCaption(int column, int row, String s)
+                throws RowsExceededException, WriteException {
+            widths[column] = Math.max(widths[column], countString(s));
+            sheet.addCell(new Label(column, row, s, timesBoldUnderline));
+        }
+
+        void addLabel(int column, int row, String s)
+                throws WriteException, RowsExceededException {
+            if (s == null)
+                s = "";
+            int cc = countString(s);
+            widths[column] = Math.max(widths[column], cc > 200 ? 150 : cc + 6);
+            sheet.addCell(new Label(column, row, s, times));
+        }
+
+        //The widest cell of each column decides its width
+        private void applyColumnWidths() {
+            for (int column = 0; column < widths.length; column++)
+                sheet.setColumnView(column, widths[column]);
+        }
+    }
+
 }
@@ -0,0 +1,49 @@
+package com.aws.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+//Excel 2007 workbook written by XlsxReportWriter
+@Component
+public class XlsxReportFormat implements ReportFormat {
+
+    private final File spoolDir;
+
+    public XlsxReportFormat(@Value("${tracker.report.spool-dir:}") String spoolDir) {
+        this.spoolDir = spoolDir.isEmpty() ? null : new File(spoolDir);
+    }
+
+    @Override
+    public String getName() {
+        return "xlsx";
+    }
+
+    @Override
+    public String getContentType() {
+        return XlsxReportWriter.CONTENT_TYPE;
+    }
+
+    @Override
+    public String getFileName() {
+        return "WorkReport.xlsx";
+    }
+
+    @Override
+    public boolean isCompressible() {
+        return false;
+    }
+
+    @Override
+    public boolean isBuiltAtFinish() {
+        return true;
+    }
+
+    @Override
+    public ReportWriter open(OutputStream os) throws IOException {
+        return new XlsxReportWriter(os, spoolDir);
+    }
+}
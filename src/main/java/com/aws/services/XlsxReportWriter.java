@@ -0,0 +1,248 @@
+package com.aws.services;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.aws.entities.WorkItem;
+
+//Writes the work item report as an .xlsx workbook one row at a time.
+//Rows are spooled to a temporary file as they arrive, so heap use does not grow with the report.
+//Column widths have to come before the rows in the sheet, so they are tracked while spooling and
+//finish() writes the workbook zip from the widths and the spooled rows.
+//The layout matches WriteExcel: captions in row 1 and the items from row 3.
+public class XlsxReportWriter implements ReportWriter {
+
+    public static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    private static final String[] CAPTIONS = {"Writer", "Date", "Guide", "Description", "Status"};
+    private static final String[] COLUMNS = {"A", "B", "C", "D", "E"};
+    private static final int MAX_ROWS = 1048576;
+
+    //Cell styles defined in styles.xml
+    private static final int STYLE_TEXT = 1;
+    private static final int STYLE_CAPTION = 2;
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+    private static final String CONTENT_TYPES = XML_DECLARATION
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+            + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+            + "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>"
+            + "</Types>";
+
+    private static final String ROOT_RELS = XML_DECLARATION
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+            + "</Relationships>";
+
+    private static final String WORKBOOK = XML_DECLARATION
+            + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\""
+            + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+            + "<sheets><sheet name=\"Work Item Report\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+            + "</workbook>";
+
+    private static final String WORKBOOK_RELS = XML_DECLARATION
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+            + "<Relationship Id=\"rId2\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>"
+            + "</Relationships>";
+
+    //Times New Roman 10pt with wrapping for the items, bold and underlined for the captions
+    private static final String STYLES = XML_DECLARATION
+            + "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+            + "<fonts count=\"2\">"
+            + "<font><sz val=\"10\"/><name val=\"Times New Roman\"/><family val=\"1\"/></font>"
+            + "<font><b/><u/><sz val=\"10\"/><name val=\"Times New Roman\"/><family val=\"1\"/></font>"
+            + "</fonts>"
+            + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill></fills>"
+            + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+            + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+            + "<cellXfs count=\"3\">"
+            + "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+            + "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyAlignment=\"1\"><alignment wrapText=\"1\"/></xf>"
+            + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\" applyAlignment=\"1\"><alignment wrapText=\"1\"/></xf>"
+            + "</cellXfs>"
+            + "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+            + "</styleSheet>";
+
+    private static final String SHEET_START = XML_DECLARATION
+            + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">";
+
+    private final OutputStream out;
+    private final File rowsFile;
+    private final Writer rows;
+    private final int[] widths = new int[CAPTIONS.length];
+    private int rowNumber;
+    private String currentRow;
+    private boolean finished;
+
+    //The spooled rows are kept in spoolDir, or the default temporary directory when it is null
+    public XlsxReportWriter(OutputStream out, File spoolDir) throws IOException {
+        this.out = out;
+        this.rowsFile = File.createTempFile("report-rows", ".xml", spoolDir);
+        this.rows = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(rowsFile), StandardCharsets.UTF_8), 65536);
+
+        startRow(1);
+        for (int column = 0; column < CAPTIONS.length; column++) {
+            writeCell(column, CAPTIONS[column], STYLE_CAPTION);
+            widths[column] = Math.max(widths[column], countString(CAPTIONS[column]));
+        }
+        rows.write("</row>");
+        rowNumber = 2;
+    }
+
+    //Adds the item as the next row
+    @Override
+    public void handle(WorkItem item) throws IOException {
+        if (rowNumber == MAX_ROWS)
+            throw new IOException("The report has more than " + (MAX_ROWS - 2) + " items");
+
+        startRow(++rowNumber);
+        writeItemCell(0, item.getName());
+        writeItemCell(1, item.getDate());
+        writeItemCell(2, item.getGuide());
+        writeItemCell(3, item.getDescription());
+        writeItemCell(4, item.getStatus());
+        rows.write("</row>");
+    }
+
+    //Writes the workbook to the stream and removes the spooled rows
+    @Override
+    public void finish() throws IOException {
+        rows.close();
+        finished = true;
+
+        try {
+            //The zip is finished but not closed, the stream belongs to the caller
+            ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, 65536));
+            Writer text = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+            addEntry(zip, text, "[Content_Types].xml", CONTENT_TYPES);
+            addEntry(zip, text, "_rels/.rels", ROOT_RELS);
+            addEntry(zip, text, "xl/workbook.xml", WORKBOOK);
+            addEntry(zip, text, "xl/_rels/workbook.xml.rels", WORKBOOK_RELS);
+            addEntry(zip, text, "xl/styles.xml", STYLES);
+
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+            text.write(SHEET_START);
+            text.write("<cols>");
+            for (int column = 0; column < widths.length; column++) {
+                text.write("<col min=\"" + (column + 1) + "\" max=\"" + (column + 1) + "\" width=\"" + widths[column]
+                        + "\" customWidth=\"1\"/>");
+            }
+            text.write("</cols><sheetData>");
+            text.flush();
+            Files.copy(rowsFile.toPath(), zip);
+            text.write("</sheetData></worksheet>");
+            text.flush();
+            zip.closeEntry();
+            zip.finish();
+            zip.flush();
+        } finally {
+            rowsFile.delete();
+        }
+    }
+
+    //Removes the spooled rows if the report was not finished
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            finished = true;
+            rows.close();
+            rowsFile.delete();
+        }
+    }
+
+    private static void addEntry(ZipOutputStream zip, Writer out, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.flush();
+        zip.closeEntry();
+    }
+
+    private void startRow(int row) throws IOException {
+        currentRow = Integer.toString(row);
+        rows.write("<row r=\"");
+        rows.write(currentRow);
+        rows.write("\">");
+    }
+
+    //Same widths as WriteExcel.addLabel, but the widest cell of the column wins
+    private void writeItemCell(int column, String value) throws IOException {
+        if (value == null)
+            value = "";
+        int cc = countString(value);
+        widths[column] = Math.max(widths[column], cc > 200 ? 150 : cc + 6);
+        writeCell(column, value, STYLE_TEXT);
+    }
+
+    private void writeCell(int column, String value, int style) throws IOException {
+        rows.write("<c r=\"");
+        rows.write(COLUMNS[column]);
+        rows.write(currentRow);
+        rows.write("\" t=\"inlineStr\" s=\"");
+        rows.write(Integer.toString(style));
+        rows.write("\"><is><t xml:space=\"preserve\">");
+        writeText(value);
+        rows.write("</t></is></c>");
+    }
+
+    //Escapes markup characters. Characters XML cannot carry, and underscores that would read as
+    //an escape, are written as _xHHHH_ the way Excel does.
+    private void writeText(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '<':
+                    rows.write("&lt;");
+                    break;
+                case '>':
+                    rows.write("&gt;");
+                    break;
+                case '&':
+                    rows.write("&amp;");
+                    break;
+                case '_':
+                    rows.write(isEscapeSequence(value, i) ? "_x005F_" : "_");
+                    break;
+                default:
+                    if ((ch < 0x20 && ch != '\t' && ch != '\n' && ch != '\r') || ch == 0xFFFE || ch == 0xFFFF)
+                        rows.write(String.format("_x%04X_", (int) ch));
+                    else
+                        rows.write(ch);
+            }
+        }
+    }
+
+    private static boolean isEscapeSequence(String value, int start) {
+        if (start + 6 >= value.length() || value.charAt(start + 1) != 'x' || value.charAt(start + 6) != '_')
+            return false;
+        for (int i = start + 2; i < start + 6; i++) {
+            if (Character.digit(value.charAt(i), 16) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    //Counts each character except space
+    private static int countString(String ss) {
+        int count = 0;
+        for (int i = 0; i < ss.length(); i++) {
+            if (ss.charAt(i) != ' ')
+                count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,18 @@
+-- Optional migration of work.idwork from a UUID string to BINARY(16).
+-- Run it with the application stopped, then start the application with tracker.ids.storage=binary.
+-- Existing ids (random version 4 UUIDs) and new time-ordered version 7 ids are both stored as their
+-- 16 bytes, and read back as the same lowercase UUID strings, so ids already handed out keep working.
+-- Byte order matches the order of the strings, so keyset cursors on (date, idwork) are unaffected.
+ALTER TABLE work ADD COLUMN idwork_bin BINARY(16) NULL;
+
+UPDATE work SET idwork_bin = UNHEX(REPLACE(idwork, '-', ''));
+
+-- Rebuilds the table and its secondary indexes, which all carry the primary key
+ALTER TABLE work
+    DROP PRIMARY KEY,
+    DROP COLUMN idwork,
+    CHANGE COLUMN idwork_bin idwork BINARY(16) NOT NULL FIRST,
+    ADD PRIMARY KEY (idwork);
+
+-- Staying on the string column needs no migration: new version 7 ids are appended at one end of
+-- the primary key. OPTIMIZE TABLE work; compacts the pages that random ids left half full.
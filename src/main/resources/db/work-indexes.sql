@@ -0,0 +1,5 @@
+-- Index used by the work item list queries in RetrieveItems / WorkItemQuery.
+-- The filters username = ? and archive = ? are equality matches and the list is sorted and
+-- paged by date; InnoDB appends the primary key (idwork) to every secondary index, so the
+-- (date, idwork) keyset cursor is resolved from this index without a filesort.
+CREATE INDEX work_username_archive_date ON work (username, archive, date);
@@ -0,0 +1,127 @@
+package com.aws.entities;
+
+import java.lang.management.ManagementFactory;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+
+//Compares DateCodec with SimpleDateFormat and LocalDate.parse/toString: calls per second and bytes
+//allocated per call on the measuring thread, for parsing yyyy-MM-dd and for formatting it.
+//The dates cover two years, so DateCodec.format is measured with the few distinct dates of a
+//report or item list in its table. Not a unit test, so surefire does not run it. After mvn test-compile:
+//  java -cp target/test-classes:target/classes com.aws.entities.DateCodecBenchmark [calls] [iterations]
+public class DateCodecBenchmark {
+
+    private static final int DISTINCT_DATES = 730;
+
+    private final int calls;
+    private final String[] texts;
+    private final int[] epochDays;
+    private final LocalDate[] localDates;
+    private final Date[] utilDates;
+
+    //SimpleDateFormat is not thread safe, so the code DateCodec replaced made one per call.
+    //Reusing one instance here leaves out that cost and flatters it.
+    private final SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    //Results are summed here so the JIT cannot drop the calls
+    private long sink;
+
+    private DateCodecBenchmark(int calls) {
+        this.calls = calls;
+        simpleDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        texts = new String[calls];
+        epochDays = new int[calls];
+        localDates = new LocalDate[calls];
+        utilDates = new Date[calls];
+        LocalDate first = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < calls; i++) {
+            LocalDate date = first.plusDays(i * 7919L % DISTINCT_DATES);
+            texts[i] = date.toString();
+            epochDays[i] = (int) date.toEpochDay();
+            localDates[i] = date;
+            utilDates[i] = new Date(date.toEpochDay() * 86400000L);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        DateCodecBenchmark benchmark = new DateCodecBenchmark(calls);
+
+        System.out.printf("calls=%d%niterations=%d%n", calls, iterations);
+        benchmark.measure("parse.dateCodec", iterations, benchmark::parseDateCodec);
+        benchmark.measure("parse.simpleDateFormat", iterations, benchmark::parseSimpleDateFormat);
+        benchmark.measure("parse.localDate", iterations, benchmark::parseLocalDate);
+        benchmark.measure("format.dateCodec", iterations, benchmark::formatDateCodec);
+        benchmark.measure("format.simpleDateFormat", iterations, benchmark::formatSimpleDateFormat);
+        benchmark.measure("format.localDate", iterations, benchmark::formatLocalDate);
+        System.out.printf("sink=%d%n", benchmark.sink);
+    }
+
+    private void measure(String name, int iterations, Pass pass) throws ParseException {
+        long thread = Thread.currentThread().getId();
+
+        //Warm up until the JIT has compiled the pass
+        for (int i = 0; i < Math.max(3, iterations / 2); i++)
+            pass.run();
+
+        double[] callsPerSecond = new double[iterations];
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            pass.run();
+            long nanos = System.nanoTime() - start;
+            allocated += threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+            callsPerSecond[i] = calls / (nanos / 1e9);
+        }
+
+        Arrays.sort(callsPerSecond);
+        System.out.printf("%1$s.callsPerSecond.median=%2$.0f%n%1$s.callsPerSecond.best=%3$.0f%n"
+                        + "%1$s.allocatedBytesPerCall=%4$.1f%n",
+                name, callsPerSecond[iterations / 2], callsPerSecond[iterations - 1],
+                allocated / (double) iterations / calls);
+    }
+
+    private void parseDateCodec() {
+        for (String text : texts)
+            sink += DateCodec.parseEpochDay(text);
+    }
+
+    private void parseSimpleDateFormat() throws ParseException {
+        for (String text : texts)
+            sink += simpleDateFormat.parse(text).getTime();
+    }
+
+    private void parseLocalDate() {
+        for (String text : texts)
+            sink += LocalDate.parse(text).toEpochDay();
+    }
+
+    private void formatDateCodec() {
+        for (int epochDay : epochDays)
+            sink += DateCodec.format(epochDay).length();
+    }
+
+    private void formatSimpleDateFormat() {
+        for (Date date : utilDates)
+            sink += simpleDateFormat.format(date).length();
+    }
+
+    private void formatLocalDate() {
+        for (LocalDate date : localDates)
+            sink += date.toString().length();
+    }
+
+    //One pass over all the dates
+    private interface Pass {
+        void run() throws ParseException;
+    }
+}
@@ -0,0 +1,78 @@
+package com.aws.entities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import org.junit.Test;
+
+public class DateCodecTest {
+
+    @Test
+    public void roundTripsEveryDayOverTwoCenturies() {
+        int first = (int) LocalDate.of(1900, 1, 1).toEpochDay();
+        int last = (int) LocalDate.of(2100, 12, 31).toEpochDay();
+        for (int day = first; day <= last; day++) {
+            String text = LocalDate.ofEpochDay(day).toString();
+            assertEquals(text, DateCodec.format(day));
+            assertEquals(text, day, DateCodec.parseEpochDay(text));
+            assertEquals(LocalDate.ofEpochDay(day), DateCodec.parse(text));
+            assertEquals(text, DateCodec.toSqlDate(day).toString());
+        }
+    }
+
+    @Test
+    public void formatsDatesOutsideFourDigitYears() {
+        int day = (int) LocalDate.of(10000, 1, 1).toEpochDay();
+        assertEquals("+10000-01-01", DateCodec.format(day));
+    }
+
+    @Test
+    public void formatReturnsCachedTextForTheSameDay() {
+        int day = (int) LocalDate.of(2024, 2, 29).toEpochDay();
+        assertSame(DateCodec.format(day), DateCodec.format(day));
+    }
+
+    @Test
+    public void formatReplacesCachedTextOfAnotherDayInTheSameSlot() {
+        int day = (int) LocalDate.of(2024, 2, 29).toEpochDay();
+        assertEquals("2024-02-29", DateCodec.format(day));
+        assertEquals(LocalDate.ofEpochDay(day + 4096).toString(), DateCodec.format(day + 4096));
+        assertEquals("2024-02-29", DateCodec.format(day));
+    }
+
+    @Test
+    public void ignoresSurroundingWhitespace() {
+        assertEquals(LocalDate.of(2024, 3, 1).toEpochDay(), DateCodec.parseEpochDay(" \t2024-03-01\n"));
+    }
+
+    @Test
+    public void rejectsMalformedText() {
+        String[] malformed = { "", "2024", "2024-3-01", "2024-03-1", "24-03-01", "2024/03/01", "2024-03-01x",
+                "x2024-03-01", "2024-0a-01", "2024-03-0 ", "+2024-03-01", "2024 03 01", "01-03-2024" };
+        for (String text : malformed) {
+            try {
+                DateCodec.parseEpochDay(text);
+                fail("accepted " + text);
+            } catch (DateTimeParseException e) {
+                assertEquals(text, e.getParsedString());
+            }
+        }
+    }
+
+    @Test
+    public void rejectsDatesThatDoNotExist() {
+        String[] invalid = { "2024-00-10", "2024-13-01", "2024-04-31", "2023-02-29", "2024-01-00" };
+        for (String text : invalid) {
+            try {
+                DateCodec.parseEpochDay(text);
+                fail("accepted " + text);
+            } catch (DateTimeParseException e) {
+                assertEquals(text, e.getParsedString());
+            }
+        }
+    }
+}
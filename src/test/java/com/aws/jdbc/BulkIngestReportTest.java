@@ -0,0 +1,52 @@
+package com.aws.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BulkIngestReportTest {
+
+    @Test
+    public void countsRecordsChunksAndErrors() {
+        BulkIngestReport report = new BulkIngestReport(10);
+        for (int i = 0; i < 6; i++)
+            report.recordRead();
+        report.recordRejected(2, "date is required");
+        report.chunkCommitted(3);
+        report.chunkFailed(5, 6, 2, "Duplicate entry");
+        report.inputFailed("Connection reset");
+
+        assertEquals(6, report.getRecords());
+        assertEquals(3, report.getInserted());
+        assertEquals(3, report.getRejected());
+        assertEquals(1, report.getCommittedChunks());
+        assertEquals(1, report.getFailedChunks());
+        assertEquals(Arrays.asList("record 2: date is required", "records 5-6: Duplicate entry", "input: Connection reset"),
+                report.getErrors());
+    }
+
+    @Test
+    public void failedChunkDoesNotCountRecordsRejectedByValidationAgain() {
+        BulkIngestReport report = new BulkIngestReport(10);
+        for (int i = 0; i < 4; i++)
+            report.recordRead();
+        report.recordRejected(2, "status is required");
+        report.recordRejected(3, "status is required");
+        report.chunkFailed(1, 4, 2, "Lock wait timeout");
+
+        assertEquals(4, report.getRejected());
+        assertEquals(0, report.getInserted());
+    }
+
+    @Test
+    public void keepsAtMostMaxErrorsMessages() {
+        BulkIngestReport report = new BulkIngestReport(2);
+        for (int i = 1; i <= 5; i++)
+            report.recordRejected(i, "guide is required");
+
+        assertEquals(5, report.getRejected());
+        assertEquals(2, report.getErrors().size());
+    }
+}
@@ -0,0 +1,119 @@
+package com.aws.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+//Measures what the choice of work item id costs MySQL on insert, which is the reason for WorkItemIds
+//and db/work-binary-ids.sql. It loads scratch copies of the work table (the columns in Readme.md and
+//the index in db/work-indexes.sql) with random version 4 UUIDs and with WorkItemIds.newId() version 7
+//ids, stored as text and as BINARY(16), and reports rows per second overall and over the last tenth
+//of the load, when the primary key no longer fits in the buffer pool if the row count is large
+//enough, and the size of each table. Rows are inserted in JDBC batches, one transaction per batch,
+//as /work/bulk does. Not a unit test, so surefire does not run it. After mvn test-compile:
+//  java -cp target/test-classes:target/classes:<dependencies> com.aws.jdbc.IdInsertBenchmark \
+//      'jdbc:mysql://localhost:3306/mydb?rewriteBatchedStatements=true' user password [rows] [batchSize]
+//The scratch tables are named work_ids_* and dropped at the end.
+public class IdInsertBenchmark {
+
+    private static final String[] GUIDES = {"Java", "Python", "Go", "Rust", "JavaScript"};
+
+    private final Connection c;
+    private final int rows;
+    private final int batchSize;
+
+    private IdInsertBenchmark(Connection c, int rows, int batchSize) {
+        this.c = c;
+        this.rows = rows;
+        this.batchSize = batchSize;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: IdInsertBenchmark jdbcUrl user password [rows] [batchSize]");
+            return;
+        }
+        int rows = args.length > 3 ? Integer.parseInt(args[3]) : 1000000;
+        int batchSize = args.length > 4 ? Integer.parseInt(args[4]) : 500;
+
+        WorkItemIds text = new WorkItemIds("text");
+        WorkItemIds binary = new WorkItemIds("binary");
+        try (Connection c = DriverManager.getConnection(args[0], args[1], args[2])) {
+            IdInsertBenchmark benchmark = new IdInsertBenchmark(c, rows, batchSize);
+            System.out.printf("rows=%d%nbatchSize=%d%n", rows, batchSize);
+            benchmark.load("text.random", "VARCHAR(45)", text, () -> UUID.randomUUID().toString());
+            benchmark.load("text.v7", "VARCHAR(45)", text, text::newId);
+            benchmark.load("binary.random", "BINARY(16)", binary, () -> UUID.randomUUID().toString());
+            benchmark.load("binary.v7", "BINARY(16)", binary, binary::newId);
+        }
+    }
+
+    //Creates the table, inserts the rows with ids from the supplier bound by storage, prints the results
+    private void load(String name, String idType, WorkItemIds storage, Supplier<String> newId) throws SQLException {
+        String table = "work_ids_" + name.replace('.', '_');
+        execute("DROP TABLE IF EXISTS " + table);
+        execute("CREATE TABLE " + table + " (idwork " + idType + " NOT NULL, date DATE, description VARCHAR(400),"
+                + " guide VARCHAR(45), status VARCHAR(400), username VARCHAR(45), archive TINYINT(4),"
+                + " PRIMARY KEY (idwork), INDEX work_username_archive_date (username, archive, date))");
+
+        //The last tenth of the rows starts at this row
+        int tail = rows - rows / 10;
+        long start = System.nanoTime();
+        long tailStart = start;
+        c.setAutoCommit(false);
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO " + table
+                + " (idwork, username,date,description, guide, status, archive) VALUES(?,?, ?,?,?,?,?)")) {
+            long firstDay = LocalDate.of(2024, 1, 1).toEpochDay();
+            for (int i = 0; i < rows; i++) {
+                if (i == tail)
+                    tailStart = System.nanoTime();
+                storage.bind(ps, 1, newId.get());
+                ps.setString(2, "user" + i % 100 + "@example.com");
+                ps.setDate(3, java.sql.Date.valueOf(LocalDate.ofEpochDay(firstDay + i % 366)));
+                ps.setString(4, "Load test item " + i);
+                ps.setString(5, GUIDES[i % GUIDES.length]);
+                ps.setString(6, i % 3 == 0 ? "Done" : "Open");
+                ps.setBoolean(7, false);
+                ps.addBatch();
+                if ((i + 1) % batchSize == 0 || i == rows - 1) {
+                    ps.executeBatch();
+                    c.commit();
+                }
+            }
+        } finally {
+            c.setAutoCommit(true);
+        }
+        long end = System.nanoTime();
+
+        execute("ANALYZE TABLE " + table);
+        long dataBytes = 0;
+        long indexBytes = 0;
+        try (PreparedStatement ps = c.prepareStatement("SELECT data_length, index_length FROM information_schema.tables"
+                + " WHERE table_schema = DATABASE() AND table_name = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    dataBytes = rs.getLong(1);
+                    indexBytes = rs.getLong(2);
+                }
+            }
+        }
+        execute("DROP TABLE " + table);
+
+        System.out.printf("%1$s.rowsPerSecond=%2$.0f%n%1$s.lastTenthRowsPerSecond=%3$.0f%n"
+                        + "%1$s.dataBytes=%4$d%n%1$s.indexBytes=%5$d%n",
+                name, rows / ((end - start) / 1e9), (rows - tail) / ((end - tailStart) / 1e9), dataBytes, indexBytes);
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement statement = c.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.aws.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.aws.entities.WorkItem;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+public class InjectWorkServiceTest {
+
+    private static final String HEADER = "date,description,guide,status\n";
+    private static final String VALID = "2024-03-01,Item,Java,Open\n";
+    private static final String NO_STATUS = "2024-03-01,Item,Java,\n";
+
+    private ConnectionHelper connectionHelper;
+    private Connection connection;
+    private PreparedStatement ps;
+    private ApplicationEventPublisher eventPublisher;
+
+    //Connections borrowed and not yet closed
+    private final AtomicInteger open = new AtomicInteger();
+
+    @Before
+    public void setUp() throws SQLException {
+        connectionHelper = mock(ConnectionHelper.class);
+        connection = mock(Connection.class);
+        ps = mock(PreparedStatement.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+
+        when(connectionHelper.getConnection()).thenAnswer(invocation -> {
+            open.incrementAndGet();
+            return connection;
+        });
+        doAnswer(invocation -> open.decrementAndGet()).when(connection).close();
+        when(connection.prepareStatement(anyString())).thenReturn(ps);
+    }
+
+    private InjectWorkService service(int chunkSize) {
+        return new InjectWorkService(connectionHelper, new StatementCache(), eventPublisher, new WorkItemIds("text"),
+                chunkSize, 100);
+    }
+
+    //Fails the test when a record is read while a connection is borrowed
+    private WorkItemReader csv(String records) throws Exception {
+        WorkItemCsvReader csv = new WorkItemCsvReader(new StringReader(HEADER + records));
+        return new WorkItemReader() {
+            @Override
+            public WorkItem read() throws java.io.IOException, InvalidRecordException {
+                assertEquals("connection held while reading", 0, open.get());
+                return csv.read();
+            }
+
+            @Override
+            public int getRecordNumber() {
+                return csv.getRecordNumber();
+            }
+        };
+    }
+
+    @Test
+    public void insertsEachChunkOnItsOwnConnection() throws Exception {
+        BulkIngestReport report = service(2).injestBulk(csv(VALID + VALID + VALID + VALID + VALID), "user");
+
+        assertEquals(5, report.getRecords());
+        assertEquals(5, report.getInserted());
+        assertEquals(0, report.getRejected());
+        assertEquals(3, report.getCommittedChunks());
+        verify(connectionHelper, times(3)).getConnection();
+        verify(ps, times(5)).addBatch();
+        verify(ps, times(3)).executeBatch();
+        verify(connection, times(3)).commit();
+        assertEquals(0, open.get());
+        verify(eventPublisher).publishEvent(any(WorkItemsChangedEvent.class));
+    }
+
+    @Test
+    public void failedChunkCountsOnlyItsBatchedRows() throws Exception {
+        when(ps.executeBatch()).thenThrow(new SQLException("Lock wait timeout"));
+
+        BulkIngestReport report = service(3).injestBulk(csv(VALID + NO_STATUS + VALID + VALID), "user");
+
+        assertEquals(4, report.getRecords());
+        assertEquals(0, report.getInserted());
+        assertEquals(4, report.getRejected());
+        assertEquals(1, report.getFailedChunks());
+        assertEquals("record 2: status is required", report.getErrors().get(0));
+        assertEquals("records 1-4: Lock wait timeout", report.getErrors().get(1));
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        assertEquals(0, open.get());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    public void throwsWhenNoConnectionBeforeAnythingIsInserted() throws Exception {
+        when(connectionHelper.getConnection()).thenThrow(new SQLTransientConnectionException("Too many"));
+
+        try {
+            service(2).injestBulk(csv(VALID + VALID + VALID), "user");
+            fail("import went on without a connection");
+        } catch (SQLTransientConnectionException e) {
+            assertEquals("Too many", e.getMessage());
+        }
+    }
+
+    @Test
+    public void stopsAndReportsWhenNoConnectionAfterAChunkWasInserted() throws Exception {
+        AtomicInteger borrowed = new AtomicInteger();
+        when(connectionHelper.getConnection()).thenAnswer(invocation -> {
+            if (borrowed.incrementAndGet() > 1)
+                throw new SQLTransientConnectionException("Too many");
+            open.incrementAndGet();
+            return connection;
+        });
+
+        BulkIngestReport report = service(2).injestBulk(csv(VALID + VALID + VALID + VALID + VALID + VALID), "user");
+
+        assertEquals(4, report.getRecords());
+        assertEquals(2, report.getInserted());
+        assertEquals(2, report.getRejected());
+        assertEquals("records 3-4: Too many", report.getErrors().get(0));
+        verify(eventPublisher).publishEvent(any(WorkItemsChangedEvent.class));
+    }
+}
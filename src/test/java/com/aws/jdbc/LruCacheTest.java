@@ -0,0 +1,81 @@
+package com.aws.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LruCacheTest {
+
+    private static void put(LruCache<String, String> cache, String key, String value) {
+        cache.start(key).complete(value);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LruCache<String, String> cache = new LruCache<String, String>("test", 2, 300);
+        put(cache, "a", "1");
+        put(cache, "b", "2");
+        assertEquals("1", cache.get("a"));
+
+        put(cache, "c", "3");
+
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertTrue(cache.toString().contains("test.evictions=1"));
+    }
+
+    @Test
+    public void dropsExpiredEntries() {
+        LruCache<String, String> cache = new LruCache<String, String>("test", 10, 0);
+        put(cache, "a", "1");
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+        assertTrue(cache.toString().contains("test.expirations=1"));
+    }
+
+    @Test
+    public void invalidationCancelsLoadInProgress() {
+        LruCache<String, String> cache = new LruCache<String, String>("test", 10, 300);
+        LruCache<String, String>.Load load = cache.start("a");
+
+        cache.invalidate("a");
+        load.complete("stale");
+
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void newerLoadReplacesOlderOne() {
+        LruCache<String, String> cache = new LruCache<String, String>("test", 10, 300);
+        LruCache<String, String>.Load older = cache.start("a");
+        LruCache<String, String>.Load newer = cache.start("a");
+
+        older.complete("old");
+        assertNull(cache.get("a"));
+        older.abandon();
+        newer.complete("new");
+
+        assertEquals("new", cache.get("a"));
+    }
+
+    @Test
+    public void invalidatesMatchingKeys() {
+        LruCache<String, String> cache = new LruCache<String, String>("test", 10, 300);
+        put(cache, "alice/xml", "1");
+        put(cache, "alice/json", "2");
+        put(cache, "bob/xml", "3");
+        LruCache<String, String>.Load load = cache.start("alice/csv");
+
+        cache.invalidateIf(key -> key.startsWith("alice/"));
+        load.complete("4");
+
+        assertEquals(1, cache.getSize());
+        assertEquals("3", cache.get("bob/xml"));
+        assertNull(cache.get("alice/csv"));
+        assertTrue(cache.toString().contains("test.invalidations=2"));
+    }
+}
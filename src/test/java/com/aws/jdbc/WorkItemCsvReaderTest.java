@@ -0,0 +1,140 @@
+package com.aws.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import com.aws.entities.WorkItem;
+import org.junit.Test;
+
+public class WorkItemCsvReaderTest {
+
+    private static WorkItemCsvReader reader(String csv) throws IOException, InvalidRecordException {
+        return new WorkItemCsvReader(new StringReader(csv));
+    }
+
+    @Test
+    public void readsRecordsInHeaderOrder() throws Exception {
+        WorkItemCsvReader reader = reader("status,guide,extra,date,description\n"
+                + "Open,Java,x,2024-03-01,First\r\n"
+                + "Done,Python,y,2024-03-02,Second\n");
+
+        WorkItem first = reader.read();
+        assertEquals("2024-03-01", first.getDate());
+        assertEquals("First", first.getDescription());
+        assertEquals("Java", first.getGuide());
+        assertEquals("Open", first.getStatus());
+        assertEquals(1, reader.getRecordNumber());
+
+        WorkItem second = reader.read();
+        assertEquals("Second", second.getDescription());
+        assertEquals(2, reader.getRecordNumber());
+
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void readsQuotedFields() throws Exception {
+        WorkItemCsvReader reader = reader("date,description,guide,status\n"
+                + "2024-03-01,\"Commas, and\nline breaks\",Java,\"Open\"\n");
+
+        WorkItem item = reader.read();
+        assertEquals("Commas, and\nline breaks", item.getDescription());
+        assertEquals("Open", item.getStatus());
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void readsEscapedQuotes() throws Exception {
+        WorkItemCsvReader reader = reader("date,description,guide,status\n"
+                + "2024-03-01,\"Say \"\"hello\"\"\",Java,Open\n");
+
+        assertEquals("Say \"hello\"", reader.read().getDescription());
+    }
+
+    @Test
+    public void skipsBlankLinesAndReadsLastLineWithoutBreak() throws Exception {
+        WorkItemCsvReader reader = reader("date,description,guide,status\n"
+                + "\n"
+                + "2024-03-01,First,Java,Open\n"
+                + "\r\n"
+                + "2024-03-02,Second,Java,Open");
+
+        assertEquals("First", reader.read().getDescription());
+        assertEquals(1, reader.getRecordNumber());
+        assertEquals("Second", reader.read().getDescription());
+        assertEquals(2, reader.getRecordNumber());
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void rejectsShortRowAndContinues() throws Exception {
+        WorkItemCsvReader reader = reader("date,description,guide,status\n"
+                + "2024-03-01,Short\n"
+                + "2024-03-02,Second,Java,Open\n");
+
+        try {
+            reader.read();
+            fail("short row accepted");
+        } catch (InvalidRecordException e) {
+            assertEquals("expected 4 fields but found 2", e.getMessage());
+        }
+        assertEquals(1, reader.getRecordNumber());
+
+        assertEquals("Second", reader.read().getDescription());
+        assertEquals(2, reader.getRecordNumber());
+    }
+
+    @Test
+    public void rejectsBadDate() throws Exception {
+        WorkItemCsvReader reader = reader("date,description,guide,status\n"
+                + "03/01/2024,First,Java,Open\n");
+
+        try {
+            reader.read();
+            fail("bad date accepted");
+        } catch (InvalidRecordException e) {
+            assertEquals("date must be yyyy-MM-dd", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsMissingHeader() throws Exception {
+        try {
+            reader("");
+            fail("empty input accepted");
+        } catch (InvalidRecordException e) {
+            assertEquals("missing header", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsHeaderWithoutRequiredColumns() throws Exception {
+        try {
+            reader("date,description,status\n2024-03-01,First,Open\n");
+            fail("header without guide accepted");
+        } catch (InvalidRecordException e) {
+            assertEquals("header must name the columns date, description, guide and status", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedQuotedFieldAsTheRecordItStarts() throws Exception {
+        WorkItemCsvReader reader = reader("date,description,guide,status\n"
+                + "2024-03-01,First,Java,Open\n"
+                + "2024-03-02,\"Cut off");
+
+        assertEquals("First", reader.read().getDescription());
+        try {
+            reader.read();
+            fail("truncated record accepted");
+        } catch (InvalidRecordException e) {
+            assertEquals("unterminated quoted field", e.getMessage());
+        }
+        assertEquals(2, reader.getRecordNumber());
+        assertNull(reader.read());
+    }
+}
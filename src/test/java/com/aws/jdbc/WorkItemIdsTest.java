@@ -0,0 +1,144 @@
+package com.aws.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class WorkItemIdsTest {
+
+    @Test
+    public void idsAreVersion7AndIncreaseWithinOneMillisecond() {
+        WorkItemIds ids = new WorkItemIds("text");
+
+        //Far more ids than one millisecond's 4096 sequence values
+        UUID previous = UUID.fromString(ids.newId());
+        for (int i = 0; i < 200000; i++) {
+            UUID next = UUID.fromString(ids.newId());
+            assertEquals(7, next.version());
+            assertEquals(2, next.variant());
+            assertTrue(previous + " >= " + next, compareUnsigned(previous, next) < 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void idsAreUniqueAcrossThreads() throws Exception {
+        WorkItemIds ids = new WorkItemIds("text");
+        int threads = 8;
+        int perThread = 50000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit((Callable<List<String>>) () -> {
+                    List<String> made = new ArrayList<String>(perThread);
+                    for (int i = 0; i < perThread; i++)
+                        made.add(ids.newId());
+                    return made;
+                }));
+            }
+
+            Set<String> unique = new HashSet<String>();
+            for (Future<List<String>> result : results)
+                unique.addAll(result.get());
+            assertEquals(threads * perThread, unique.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void textIdsAreBoundAndReadAsStrings() throws Exception {
+        WorkItemIds ids = new WorkItemIds("text");
+        String id = ids.newId();
+
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ids.bind(ps, 1, id);
+        verify(ps).setString(1, id);
+        verify(ps, never()).setBytes(anyInt(), any(byte[].class));
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn(id);
+        assertEquals(id, ids.read(rs, 1));
+    }
+
+    @Test
+    public void binaryIdsRoundTripThroughSixteenBytes() throws Exception {
+        WorkItemIds ids = new WorkItemIds("binary");
+        String id = ids.newId();
+
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ids.bind(ps, 3, id);
+        ArgumentCaptor<byte[]> bound = ArgumentCaptor.forClass(byte[].class);
+        verify(ps).setBytes(eq(3), bound.capture());
+        verify(ps, never()).setString(anyInt(), any());
+
+        UUID uuid = UUID.fromString(id);
+        byte[] expected = ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+        assertArrayEquals(expected, bound.getValue());
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getBytes(2)).thenReturn(bound.getValue());
+        assertEquals(id, ids.read(rs, 2));
+    }
+
+    @Test
+    public void malformedBinaryIdsMatchNoRow() throws Exception {
+        WorkItemIds ids = new WorkItemIds("binary");
+
+        for (String id : new String[] { null, "", "42", "not-a-uuid-not-a-uuid-not-a-uuid-xxx" }) {
+            PreparedStatement ps = mock(PreparedStatement.class);
+            ids.bind(ps, 1, id);
+            verify(ps).setBytes(1, new byte[0]);
+        }
+    }
+
+    @Test
+    public void binaryColumnOfWrongLengthReadsAsNull() throws Exception {
+        WorkItemIds ids = new WorkItemIds("binary");
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getBytes(1)).thenReturn(null, new byte[15]);
+        assertNull(ids.read(rs, 1));
+        assertNull(ids.read(rs, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownStorage() {
+        new WorkItemIds("hex");
+    }
+
+    //UUID.compareTo compares the halves as signed longs, which does not match the byte order of the column
+    private static int compareUnsigned(UUID a, UUID b) {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,98 @@
+package com.aws.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import com.aws.entities.WorkItem;
+import org.junit.Test;
+
+public class WorkItemJsonLinesReaderTest {
+
+    private static WorkItemJsonLinesReader reader(String lines) {
+        return new WorkItemJsonLinesReader(new BufferedReader(new StringReader(lines)));
+    }
+
+    private static void assertRejected(WorkItemJsonLinesReader reader, String message) throws Exception {
+        try {
+            reader.read();
+            fail("record accepted");
+        } catch (InvalidRecordException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    @Test
+    public void readsRecordsAndSkipsBlankLines() throws Exception {
+        WorkItemJsonLinesReader reader = reader(
+                "{\"date\":\"2024-03-01\",\"description\":\"First\",\"guide\":\"Java\",\"status\":\"Open\",\"extra\":1}\n"
+                + "\n   \n"
+                + "{\"status\":\"Done\",\"guide\":\"Python\",\"description\":\"Second\",\"date\":\"2024-03-02\"}");
+
+        WorkItem first = reader.read();
+        assertEquals("2024-03-01", first.getDate());
+        assertEquals("First", first.getDescription());
+        assertEquals("Java", first.getGuide());
+        assertEquals("Open", first.getStatus());
+        assertEquals(1, reader.getRecordNumber());
+
+        WorkItem second = reader.read();
+        assertEquals("Second", second.getDescription());
+        assertEquals(2, reader.getRecordNumber());
+
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void readsEscapedQuotesAndLineBreaks() throws Exception {
+        WorkItemJsonLinesReader reader = reader(
+                "{\"date\":\"2024-03-01\",\"description\":\"Say \\\"hello\\\",\\nthen go\",\"guide\":\"Java\",\"status\":\"Open\"}\n");
+
+        assertEquals("Say \"hello\",\nthen go", reader.read().getDescription());
+    }
+
+    @Test
+    public void leavesMissingFieldsUnset() throws Exception {
+        WorkItemJsonLinesReader reader = reader("{\"description\":\"First\",\"guide\":null}\n");
+
+        WorkItem item = reader.read();
+        assertFalse(item.hasDate());
+        assertNull(item.getGuide());
+        assertNull(item.getStatus());
+    }
+
+    @Test
+    public void rejectsMalformedRecordsAndContinues() throws Exception {
+        WorkItemJsonLinesReader reader = reader("[1,2]\n"
+                + "{\"date\":\"2024-03-01\",\"description\":42}\n"
+                + "{\"date\":\"2024-3-1\"}\n"
+                + "{\"date\":\"2024-03-01\",\"description\":\"Fourth\",\"guide\":\"Java\",\"status\":\"Open\"}\n");
+
+        assertRejected(reader, "expected a JSON object");
+        assertEquals(1, reader.getRecordNumber());
+        assertRejected(reader, "description must be a string");
+        assertEquals(2, reader.getRecordNumber());
+        assertRejected(reader, "date must be yyyy-MM-dd");
+        assertEquals(3, reader.getRecordNumber());
+
+        assertEquals("Fourth", reader.read().getDescription());
+        assertEquals(4, reader.getRecordNumber());
+    }
+
+    @Test
+    public void rejectsTruncatedRecord() throws Exception {
+        WorkItemJsonLinesReader reader = reader(
+                "{\"date\":\"2024-03-01\",\"description\":\"First\",\"guide\":\"Java\",\"status\":\"Open\"}\n"
+                + "{\"date\":\"2024-03-02\",\"descr");
+
+        assertEquals("First", reader.read().getDescription());
+        assertRejected(reader, "invalid JSON");
+        assertEquals(2, reader.getRecordNumber());
+        assertNull(reader.read());
+    }
+}
@@ -0,0 +1,100 @@
+package com.aws.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import com.aws.entities.WorkItem;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class WorkItemXmlWriterTest {
+
+    private static final List<String> TEXTS = Arrays.asList(
+            "a<b>&c\"' ]]>",
+            "line\rbreak\r\n",
+            "\u0001\u0008\u000B\u000C\u001F\ttab\nnewline",
+            "\u007F\u0080\u0085\u009F\u00A0",
+            "\uD83D\uDE00 and \uD834\uDD1E",
+            "\u2028line\u2029paragraph",
+            "\u00E9\u65E5\u672C\uFFFD",
+            "",
+            "plain");
+
+    private static String write(List<WorkItem> items) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WorkItemXmlWriter writer = new WorkItemXmlWriter(bytes);
+        writer.start();
+        for (WorkItem item : items)
+            writer.handle(item);
+        writer.finish();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    //The DOM + Transformer serialization the writer replaced
+    private static String transform(List<WorkItem> items) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = doc.createElement("Items");
+        doc.appendChild(root);
+        for (WorkItem item : items) {
+            Element element = doc.createElement("Item");
+            root.appendChild(element);
+            append(doc, element, "Id", item.getId());
+            append(doc, element, "Name", item.getName());
+            append(doc, element, "Date", item.getDate());
+            append(doc, element, "Description", item.getDescription());
+            append(doc, element, "Guide", item.getGuide());
+            append(doc, element, "Status", item.getStatus());
+        }
+        StringWriter out = new StringWriter();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(out));
+        return out.toString();
+    }
+
+    private static void append(Document doc, Element parent, String name, String text) {
+        Element element = doc.createElement(name);
+        element.appendChild(doc.createTextNode(text));
+        parent.appendChild(element);
+    }
+
+    private static WorkItem item(String id, String text) {
+        return WorkItem.builder().id(id).name("alice").date(LocalDate.of(2024, 3, 1))
+                .description(text).guide(text).status(text).build();
+    }
+
+    @Test
+    public void matchesTransformerForEachInput() throws Exception {
+        for (String text : TEXTS) {
+            List<WorkItem> items = Arrays.asList(item("1", text));
+            assertEquals(text, transform(items), write(items));
+        }
+    }
+
+    @Test
+    public void matchesTransformerForSeveralItemsAndMissingFields() throws Exception {
+        List<WorkItem> items = Arrays.asList(
+                item("1", "first"),
+                WorkItem.builder().id("2").build(),
+                item("3", "\u2028<&>\uD83D\uDE00\r"));
+
+        assertEquals(transform(items), write(items));
+    }
+
+    @Test
+    public void matchesTransformerWithoutItems() throws Exception {
+        List<WorkItem> items = Arrays.asList();
+
+        assertEquals(transform(items), write(items));
+    }
+}
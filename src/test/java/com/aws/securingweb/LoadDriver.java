@@ -0,0 +1,267 @@
+package com.aws.securingweb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Fires concurrent sessions at a running instance and reports throughput and latency percentiles.
+//Each session logs in with its own form login and cookie, then until the time is up either adds an
+//item (POST /work) or reads a page of the user's open items (GET /retrieve with a status filter and
+//pageSize), which bypasses the item and response caches so every read runs a query.
+//Not a unit test, so surefire does not run it. After mvn test-compile:
+//  java -cp target/test-classes com.aws.securingweb.LoadDriver [baseUrl] [sessions] [seconds] [writePercent]
+//
+//To compare request threads, start the instance with LoadTestApplication (no MySQL needed, every
+//statement sleeps tracker.load.jdbc-latency-ms) or with the real database, once per setting:
+//  --tracker.web.execution=platform --server.tomcat.max-threads=200
+//  --tracker.web.execution=virtual --tracker.jdbc.max-concurrency=10
+//keeping spring.datasource.hikari.maximum-pool-size the same, and run the driver with more sessions
+//than Tomcat threads. Compare succeededPerSecond, the percentiles and rejected (503 from
+//tracker.jdbc.acquire-timeout-ms) below, and the web.* and db.* lines of /stats printed at the end.
+//The in-memory table scans all rows of the user for each read, so keep runs to a minute or so.
+public class LoadDriver {
+
+    private static final String[] GUIDES = {"Java", "Python", "Go", "Rust", "JavaScript"};
+
+    private final String baseUrl;
+
+    private LoadDriver(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        LoadDriver driver = new LoadDriver(baseUrl);
+
+        //HttpURLConnection keeps at most http.maxConnections idle connections per host
+        System.setProperty("http.maxConnections", String.valueOf(sessions));
+
+        List<Session> all = new ArrayList<Session>();
+        for (int i = 0; i < sessions; i++)
+            all.add(driver.new Session(writePercent));
+
+        CountDownLatch loggedIn = new CountDownLatch(sessions);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(sessions);
+        AtomicInteger failedLogins = new AtomicInteger();
+        long[] end = new long[1];
+        for (Session session : all) {
+            Thread thread = new Thread(() -> {
+                try {
+                    session.login();
+                } catch (IOException e) {
+                    failedLogins.incrementAndGet();
+                    e.printStackTrace();
+                }
+                loggedIn.countDown();
+                try {
+                    go.await();
+                    if (session.cookie != null)
+                        session.run(end[0]);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        loggedIn.await();
+        long start = System.nanoTime();
+        end[0] = start + seconds * 1000000000L;
+        go.countDown();
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        Latencies reads = new Latencies();
+        Latencies writes = new Latencies();
+        int rejected = 0;
+        int errors = 0;
+        for (Session session : all) {
+            reads.addAll(session.reads);
+            writes.addAll(session.writes);
+            rejected += session.rejected;
+            errors += session.errors;
+        }
+
+        System.out.printf("sessions=%d%nseconds=%.1f%nfailedLogins=%d%nsucceeded=%d%nsucceededPerSecond=%.1f%n"
+                        + "rejected=%d%nerrors=%d%n",
+                sessions, elapsed, failedLogins.get(), reads.size + writes.size,
+                (reads.size + writes.size) / elapsed, rejected, errors);
+        reads.print("read");
+        writes.print("write");
+
+        for (Session session : all) {
+            if (session.cookie != null) {
+                System.out.print(session.get("/stats"));
+                break;
+            }
+        }
+    }
+
+    private static String form(String... namesAndValues) throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0)
+                body.append('&');
+            body.append(namesAndValues[i]).append('=').append(URLEncoder.encode(namesAndValues[i + 1], "UTF-8"));
+        }
+        return body.toString();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        if (in == null)
+            return "";
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = stream.read(buffer)) > 0)
+                out.write(buffer, 0, n);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    //One logged in user session, run on its own thread
+    private class Session {
+
+        private final int writePercent;
+        private final Latencies reads = new Latencies();
+        private final Latencies writes = new Latencies();
+        private String cookie;
+        private int rejected;
+        private int errors;
+
+        private Session(int writePercent) {
+            this.writePercent = writePercent;
+        }
+
+        //Logs in with the user of WebSecurityConfig and keeps the session cookie Spring Security sets
+        private void login() throws IOException {
+            HttpURLConnection http = open("/login", "POST");
+            send(http, form("username", "user", "password", "password"));
+            String location = http.getHeaderField("Location");
+            String setCookie = http.getHeaderField("Set-Cookie");
+            read(http.getInputStream());
+            if (location == null || location.contains("error") || setCookie == null)
+                throw new IOException("Login failed with status " + http.getResponseCode());
+            int attributes = setCookie.indexOf(';');
+            cookie = attributes < 0 ? setCookie : setCookie.substring(0, attributes);
+        }
+
+        private void run(long end) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < end) {
+                boolean write = random.nextInt(100) < writePercent;
+                long start = System.nanoTime();
+                int status;
+                try {
+                    status = write ? addItem(random) : readOpenItems();
+                } catch (IOException e) {
+                    status = -1;
+                }
+                long nanos = System.nanoTime() - start;
+
+                if (status == HttpURLConnection.HTTP_OK)
+                    (write ? writes : reads).add(nanos);
+                else if (status == HttpURLConnection.HTTP_UNAVAILABLE)
+                    rejected++;
+                else
+                    errors++;
+            }
+        }
+
+        private int addItem(ThreadLocalRandom random) throws IOException {
+            HttpURLConnection http = open("/work", "POST");
+            send(http, form("date", LocalDate.of(2024, 1, 1).plusDays(random.nextInt(366)).toString(),
+                    "description", "Load test item " + random.nextInt(1000000),
+                    "guide", GUIDES[random.nextInt(GUIDES.length)],
+                    "status", random.nextBoolean() ? "Open" : "Done"));
+            return finish(http);
+        }
+
+        private int readOpenItems() throws IOException {
+            return finish(open("/retrieve?type=active&status=Open&pageSize=50", "GET"));
+        }
+
+        private String get(String path) throws IOException {
+            HttpURLConnection http = open(path, "GET");
+            http.getResponseCode();
+            return read(http.getInputStream());
+        }
+
+        private HttpURLConnection open(String path, String method) throws IOException {
+            HttpURLConnection http = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            http.setRequestMethod(method);
+            http.setInstanceFollowRedirects(false);
+            if (cookie != null)
+                http.setRequestProperty("Cookie", cookie);
+            return http;
+        }
+
+        private void send(HttpURLConnection http, String form) throws IOException {
+            http.setDoOutput(true);
+            http.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream out = http.getOutputStream()) {
+                out.write(form.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        //Reads the whole body, so the connection goes back to the keep-alive cache
+        private int finish(HttpURLConnection http) throws IOException {
+            int status = http.getResponseCode();
+            read(status < 400 ? http.getInputStream() : http.getErrorStream());
+            return status;
+        }
+    }
+
+    //Latencies of successful requests in nanoseconds
+    private static class Latencies {
+
+        private long[] nanos = new long[1024];
+        private int size;
+
+        private void add(long value) {
+            if (size == nanos.length)
+                nanos = Arrays.copyOf(nanos, size * 2);
+            nanos[size++] = value;
+        }
+
+        private void addAll(Latencies other) {
+            for (int i = 0; i < other.size; i++)
+                add(other.nanos[i]);
+        }
+
+        private void print(String name) {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            System.out.printf("%1$s.count=%2$d%n%1$s.p50.ms=%3$.1f%n%1$s.p90.ms=%4$.1f%n%1$s.p99.ms=%5$.1f%n"
+                            + "%1$s.max.ms=%6$.1f%n",
+                    name, size, percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                    size == 0 ? 0 : sorted[size - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, int percent) {
+            if (sorted.length == 0)
+                return 0;
+            return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.aws.securingweb;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Bean;
+
+//Starts the application for LoadDriver without MySQL. The Hikari pool keeps its settings, but its
+//connections come from an in-memory WorkTableDataSource whose statements each sleep
+//tracker.load.jdbc-latency-ms (default 5) first, so requests hold pooled connections and block the
+//way they do on a real database. Any other setting is passed on the command line, for example:
+//  java -cp target/test-classes:target/classes:<dependencies> com.aws.securingweb.LoadTestApplication \
+//      --tracker.load.jdbc-latency-ms=20 --tracker.web.execution=virtual --tracker.jdbc.max-concurrency=10
+//This class is a source of the application rather than a @Configuration, so component scanning of
+//com.aws never picks it up.
+public class LoadTestApplication {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(SecuringWebApplication.class, LoadTestApplication.class)
+                //Hibernate must not ask the in-memory connections for their metadata
+                .properties("spring.jpa.database-platform=org.hibernate.dialect.MySQL5Dialect",
+                        "spring.jpa.properties.hibernate.temp.use_jdbc_metadata_defaults=false")
+                .run(args);
+    }
+
+    //Gives the pool the in-memory work table before its first connection is made
+    @Bean
+    public static BeanPostProcessor workTablePool(@Value("${tracker.load.jdbc-latency-ms:5}") long latencyMillis) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource)
+                    ((HikariDataSource) bean).setDataSource(new WorkTableDataSource(latencyMillis));
+                return bean;
+            }
+        };
+    }
+}
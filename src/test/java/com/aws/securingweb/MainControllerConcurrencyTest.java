@@ -0,0 +1,372 @@
+package com.aws.securingweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import com.aws.jdbc.ConnectionHelper;
+import com.aws.jdbc.ConnectionLimiter;
+import com.aws.jdbc.InjectWorkService;
+import com.aws.jdbc.RetrieveItems;
+import com.aws.jdbc.StatementCache;
+import com.aws.jdbc.WorkItemCache;
+import com.aws.jdbc.WorkItemIds;
+import com.aws.jdbc.WorkItemsChangedEvent;
+import com.aws.services.CsvReportFormat;
+import com.aws.services.MailQueue;
+import com.aws.services.ReportFileCache;
+import com.aws.services.ReportFormats;
+import com.aws.services.ReportJobService;
+import com.aws.services.ReportLinks;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+//Calls one MainController from several threads at once. The controller, the services, the item
+//and response caches, the report file cache and the report jobs are the real singletons; only the
+//database (WorkTableDataSource) and the mail delivery are stubbed. Each thread is a different user
+//who adds, reads, pages, changes, archives, imports and reports their own items, so every response
+//must hold exactly that user's current items, no matter what the other users' requests left in the caches.
+public class MainControllerConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 15;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Consumer<WorkItemsChangedEvent>> listeners = new CopyOnWriteArrayList<Consumer<WorkItemsChangedEvent>>();
+    private final Map<String, String> mailed = new ConcurrentHashMap<String, String>();
+    private ReportJobService reportJobs;
+    private MockMvc mvc;
+
+    @Before
+    public void setUp() throws IOException {
+        ConnectionHelper connections = new ConnectionHelper(new WorkTableDataSource(), new ConnectionLimiter(0, 5000));
+        StatementCache statements = new StatementCache();
+        WorkItemIds ids = new WorkItemIds("text");
+        WorkItemCache itemCache = new WorkItemCache(1000, 300, 5000);
+        //Responses over 2 KB are streamed instead of cached, so both paths run
+        ItemResponseCache responseCache = new ItemResponseCache(500, 2048, 300);
+
+        RetrieveItems ri = new RetrieveItems(connections, statements, itemCache, event -> publish(event), ids, 500);
+        InjectWorkService ws = new InjectWorkService(connections, statements, event -> publish(event), ids, 2, 100);
+        String spoolDir = folder.newFolder("spool").getPath();
+        ReportFileCache reportFiles = new ReportFileCache(ri, 100, 600, spoolDir);
+        reportJobs = new ReportJobService(ri, new RecordingMailQueue(folder.newFolder("mail").getPath()), 2, 100, 60, spoolDir);
+
+        //Registered in @Order: the item lists are dropped before what is built from them
+        listeners.add(itemCache::onItemsChanged);
+        listeners.add(responseCache::onItemsChanged);
+        listeners.add(reportFiles::onItemsChanged);
+
+        ReportFormats formats = new ReportFormats(Collections.singletonList(new CsvReportFormat()), "csv");
+        ReportLinks links = new ReportLinks(folder.newFolder("links").getPath(), 1, "http://localhost");
+        MainController controller = new MainController(ri, ws, responseCache, reportJobs, formats, reportFiles, links, 1000, 1000);
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @After
+    public void tearDown() {
+        reportJobs.shutdown();
+        SecurityContextHolder.clearContext();
+    }
+
+    private void publish(Object event) {
+        for (Consumer<WorkItemsChangedEvent> listener : listeners)
+            listener.accept((WorkItemsChangedEvent) event);
+    }
+
+    @Test
+    public void concurrentRequestsOnlySeeTheirOwnUsersItems() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int t = 0; t < THREADS; t++) {
+                String username = "user" + t + "@example.com";
+                results.add(executor.submit((Callable<Void>) () -> {
+                    login(username);
+                    try {
+                        start.await();
+                        Session session = new Session(username);
+                        for (int round = 0; round < ROUNDS; round++)
+                            session.round(round);
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<Void> result : results)
+                result.get(120, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    //The requests of one user. expected holds the description of each of the user's active items
+    //by id; the user is the only one who changes them, so every read must return exactly these.
+    private class Session {
+
+        private final String username;
+        private final Map<String, String> expected = new HashMap<String, String>();
+
+        private Session(String username) {
+            this.username = username;
+        }
+
+        private void round(int round) throws Exception {
+            String date = LocalDate.of(2024, 1, 1).plusDays(round).toString();
+
+            //The ids of imported items are unknown until the list is read
+            String csv = "date,description,guide,status\n"
+                    + date + "," + username + " import " + round + "a,Java,Open\n"
+                    + date + "," + username + " import " + round + "b,Java,Open\n"
+                    + date + "," + username + " import " + round + "c,Java,Open\n";
+            JsonNode imported = json(perform(post("/work/bulk").contentType("text/csv").content(csv)));
+            assertEquals(3, imported.get("inserted").asInt());
+
+            String added = text(perform(post("/work")
+                    .param("date", date)
+                    .param("description", username + " item " + round)
+                    .param("guide", "Python")
+                    .param("status", "Open")));
+            assertEquals(36, added.length());
+            expected.put(added, username + " item " + round);
+
+            Map<String, String> xml = retrieveXml();
+            for (Map.Entry<String, String> item : xml.entrySet()) {
+                if (!expected.containsKey(item.getKey()))
+                    expected.put(item.getKey(), item.getValue());
+            }
+            assertEquals(expected, xml);
+            assertEquals(expected, retrieveJson());
+            assertEquals(expected, retrievePages(4));
+
+            MockHttpServletResponse modify = perform(post("/modify").param("id", added));
+            Element summary = (Element) parseXml(modify).getElementsByTagName("Item").item(0);
+            assertEquals(added, childText(summary, "Id"));
+            assertEquals(username + " item " + round, childText(summary, "Description"));
+
+            String changed = username + " changed " + round;
+            assertEquals(added, text(perform(post("/changewi").param("id", added)
+                    .param("description", changed).param("status", "Done"))));
+            expected.put(added, changed);
+
+            List<String> importedIds = idsWith(username + " import " + round);
+            assertEquals(3, importedIds.size());
+            JsonNode bulkChange = json(perform(post("/changewi/bulk")
+                    .param("id", importedIds.get(0), importedIds.get(1))
+                    .param("description", username + " bulk " + round + "a", username + " bulk " + round + "b")
+                    .param("status", "Done")));
+            assertEquals("updated", bulkChange.get(importedIds.get(0)).asText());
+            assertEquals("updated", bulkChange.get(importedIds.get(1)).asText());
+            expected.put(importedIds.get(0), username + " bulk " + round + "a");
+            expected.put(importedIds.get(1), username + " bulk " + round + "b");
+
+            assertEquals(importedIds.get(2), text(perform(post("/archive").param("id", importedIds.get(2)))));
+            expected.remove(importedIds.get(2));
+
+            String other = UUID.randomUUID().toString();
+            JsonNode bulkArchive = json(perform(post("/archive/bulk").param("id", importedIds.get(1), other)));
+            assertEquals("archived", bulkArchive.get(importedIds.get(1)).asText());
+            assertEquals("not found", bulkArchive.get(other).asText());
+            expected.remove(importedIds.get(1));
+
+            assertEquals(expected, retrieveXml());
+            assertEquals(expected, download());
+            if (round % 5 == 4)
+                assertEquals(expected, mailReport());
+        }
+
+        private Map<String, String> retrieveXml() throws Exception {
+            Document doc = parseXml(perform(get("/retrieve").param("type", "active")));
+            Map<String, String> items = new HashMap<String, String>();
+            NodeList nodes = doc.getElementsByTagName("Item");
+            for (int i = 0; i < nodes.getLength(); i++) {
+                Element item = (Element) nodes.item(i);
+                assertEquals(username, childText(item, "Name"));
+                items.put(childText(item, "Id"), childText(item, "Description"));
+            }
+            return items;
+        }
+
+        private Map<String, String> retrieveJson() throws Exception {
+            JsonNode array = json(perform(get("/retrieve").param("type", "active").header("Accept", "application/json")));
+            Map<String, String> items = new HashMap<String, String>();
+            for (JsonNode item : array) {
+                assertEquals(username, item.get("name").asText());
+                items.put(item.get("id").asText(), item.get("description").asText());
+            }
+            return items;
+        }
+
+        private Map<String, String> retrievePages(int pageSize) throws Exception {
+            Map<String, String> items = new HashMap<String, String>();
+            String cursor = null;
+            do {
+                MockHttpServletRequestBuilder request = get("/retrieve").param("type", "active")
+                        .param("format", "json").param("pageSize", String.valueOf(pageSize));
+                if (cursor != null)
+                    request.param("cursor", cursor);
+                MockHttpServletResponse response = perform(request);
+                JsonNode page = json(response);
+                assertTrue(page.size() <= pageSize);
+                for (JsonNode item : page) {
+                    assertEquals(username, item.get("name").asText());
+                    assertEquals(null, items.put(item.get("id").asText(), item.get("description").asText()));
+                }
+                cursor = response.getHeader("X-Next-Cursor");
+            } while (cursor != null);
+            return items;
+        }
+
+        private Map<String, String> download() throws Exception {
+            MockHttpServletResponse response = perform(get("/report/download").param("format", "csv"));
+            return csvDescriptions(response.getContentAsString());
+        }
+
+        //Queues a report, follows it with /report/status until it is mailed and reads the mailed CSV
+        private Map<String, String> mailReport() throws Exception {
+            JsonNode job = json(mvc.perform(post("/report").param("email", username).param("format", "csv"))
+                    .andExpect(status().isAccepted()).andReturn().getResponse());
+            String id = job.get("id").asText();
+            assertEquals(username, job.get("email").asText());
+
+            long deadline = System.currentTimeMillis() + 30000;
+            while (true) {
+                JsonNode state = json(perform(get("/report/status").param("id", id)));
+                assertEquals(id, state.get("id").asText());
+                if (state.get("state").asText().equals("DONE"))
+                    break;
+                assertNotEquals("FAILED", state.get("state").asText());
+                if (System.currentTimeMillis() > deadline)
+                    fail("Report " + id + " did not finish");
+                Thread.sleep(10);
+            }
+            return csvDescriptions(mailed.remove(username));
+        }
+
+        //The report CSV has no ids, so the descriptions are compared by id through the expected map
+        private Map<String, String> csvDescriptions(String csv) {
+            assertNotNull(csv);
+            String[] lines = csv.split("\r\n");
+            assertEquals("Writer,Date,Guide,Description,Status", lines[0]);
+            Map<String, String> byDescription = new HashMap<String, String>();
+            for (Map.Entry<String, String> item : expected.entrySet())
+                byDescription.put(item.getValue(), item.getKey());
+
+            Map<String, String> items = new HashMap<String, String>();
+            for (int i = 1; i < lines.length; i++) {
+                String[] fields = lines[i].split(",", -1);
+                assertEquals(username, fields[0]);
+                String id = byDescription.get(fields[3]);
+                items.put(id == null ? "unexpected " + fields[3] : id, fields[3]);
+            }
+            return items;
+        }
+
+        private List<String> idsWith(String descriptionPrefix) {
+            List<String> ids = new ArrayList<String>();
+            for (Map.Entry<String, String> item : expected.entrySet()) {
+                if (item.getValue().startsWith(descriptionPrefix))
+                    ids.add(item.getKey());
+            }
+            Collections.sort(ids);
+            return ids;
+        }
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequestBuilder request) throws Exception {
+        return mvc.perform(request).andExpect(status().isOk()).andReturn().getResponse();
+    }
+
+    private static String text(MockHttpServletResponse response) throws IOException {
+        return response.getContentAsString();
+    }
+
+    private static JsonNode json(MockHttpServletResponse response) throws IOException {
+        return JSON.readTree(response.getContentAsByteArray());
+    }
+
+    private static Document parseXml(MockHttpServletResponse response) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(response.getContentAsByteArray()));
+    }
+
+    private static String childText(Element parent, String name) {
+        NodeList nodes = parent.getElementsByTagName(name);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+
+    //The controller reads the user from the SecurityContextHolder of the request thread
+    private static void login(String username) {
+        User user = new User(username, "password", Collections.emptyList());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    //Keeps the mailed report of each recipient instead of sending it
+    private class RecordingMailQueue extends MailQueue {
+
+        private RecordingMailQueue(String queueDir) {
+            super(null, queueDir, 1, 1, 1, 1, 1, 1, 1);
+        }
+
+        @Override
+        public String enqueue(File report, String contentType, String fileName, String email, Listener listener) throws IOException {
+            String previous = mailed.put(email, new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8));
+            report.delete();
+            assertEquals(null, previous);
+            listener.delivered();
+            return UUID.randomUUID().toString();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.aws.securingweb;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+//An in-memory work table behind the JDBC interfaces, so RetrieveItems and InjectWorkService run
+//unchanged without MySQL. It understands exactly the statement texts those classes prepare:
+//the inserts, updates and archives by id and user, the reads by id and the WorkItemQuery selects
+//with their status, guide, cursor, order and limit parts. Anything else fails the test.
+//A latency makes every statement execution sleep first, like a round trip to MySQL; LoadTestApplication
+//uses it behind the Hikari pool, so the connections also answer the calls Hikari makes on them.
+class WorkTableDataSource implements DataSource {
+
+    private final List<Row> rows = new ArrayList<Row>();
+    private final long latencyMillis;
+
+    WorkTableDataSource() {
+        this(0);
+    }
+
+    WorkTableDataSource(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return proxy(Connection.class, new ConnectionHandler());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) {
+        return getConnection();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        throw new SQLException("Not a wrapper");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) {
+        return false;
+    }
+
+    private synchronized int update(String sql, Map<Integer, Object> params) throws SQLException {
+        if (sql.startsWith("INSERT INTO work ")) {
+            Date date = (Date) params.get(3);
+            rows.add(new Row((String) params.get(1), (String) params.get(2),
+                    date == null ? null : (int) date.toLocalDate().toEpochDay(),
+                    (String) params.get(4), (String) params.get(5), (String) params.get(6)));
+            return 1;
+        }
+
+        int count = 0;
+        if (sql.startsWith("update work set description = ?, status = ? where idwork = ? and username = ?")) {
+            for (Row row : rows) {
+                if (row.id.equals(params.get(3)) && row.username.equals(params.get(4))) {
+                    row.description = (String) params.get(1);
+                    row.status = (String) params.get(2);
+                    count++;
+                }
+            }
+            return count;
+        }
+        if (sql.startsWith("update work set archive = 1 where idwork = ? and username = ? and archive = 0")) {
+            for (Row row : rows) {
+                if (row.id.equals(params.get(1)) && row.username.equals(params.get(2)) && !row.archived) {
+                    row.archived = true;
+                    count++;
+                }
+            }
+            return count;
+        }
+        throw new SQLException("Unexpected update: " + sql);
+    }
+
+    private synchronized List<Object[]> query(String sql, Map<Integer, Object> params) throws SQLException {
+        List<Object[]> result = new ArrayList<Object[]>();
+        if (sql.startsWith("Select description, status FROM work where idwork = ?")) {
+            for (Row row : rows) {
+                if (row.id.equals(params.get(1)))
+                    result.add(new Object[] {row.description, row.status});
+            }
+            return result;
+        }
+        if (sql.endsWith(" where idwork = ?")) {
+            for (Row row : rows) {
+                if (row.id.equals(params.get(1)))
+                    result.add(row.columns());
+            }
+            return result;
+        }
+        if (!sql.contains(" where username = ? and archive = ?"))
+            throw new SQLException("Unexpected query: " + sql);
+
+        int index = 1;
+        String username = (String) params.get(index++);
+        boolean archived = (Boolean) params.get(index++);
+        String status = sql.contains(" and status = ?") ? (String) params.get(index++) : null;
+        String guide = sql.contains(" and guide = ?") ? (String) params.get(index++) : null;
+        boolean descending = sql.contains(" order by date desc");
+        Integer afterDay = null;
+        String afterId = null;
+        if (sql.contains(" and date >= ?") || sql.contains(" and date <= ?")) {
+            afterDay = (int) ((Date) params.get(index)).toLocalDate().toEpochDay();
+            afterId = (String) params.get(index + 2);
+            index += 3;
+        }
+        int limit = sql.endsWith(" limit ?") ? (Integer) params.get(index) : Integer.MAX_VALUE;
+
+        List<Row> matches = new ArrayList<Row>();
+        for (Row row : rows) {
+            if (row.username.equals(username) && row.archived == archived
+                    && (status == null || status.equals(row.status))
+                    && (guide == null || guide.equals(row.guide)))
+                matches.add(row);
+        }
+        if (sql.contains(" order by date")) {
+            Comparator<Row> order = Comparator.comparing((Row row) -> row.epochDay, Comparator.nullsFirst(Comparator.<Integer>naturalOrder()))
+                    .thenComparing(row -> row.id);
+            matches.sort(descending ? order.reversed() : order);
+        }
+        for (Row row : matches) {
+            if (afterDay != null) {
+                //A NULL date never matches the date range of a cursor
+                if (row.epochDay == null)
+                    continue;
+                int compare = Integer.compare(row.epochDay, afterDay);
+                if (compare == 0)
+                    compare = row.id.compareTo(afterId);
+                if (descending ? compare >= 0 : compare <= 0)
+                    continue;
+            }
+            if (result.size() == limit)
+                break;
+            result.add(row.columns());
+        }
+        return result;
+    }
+
+    //Sleeps outside the table lock, so concurrent statements wait in parallel as they would on MySQL
+    private void roundTrip() throws InterruptedException {
+        if (latencyMillis > 0)
+            Thread.sleep(latencyMillis);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(WorkTableDataSource.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    //Object methods, so the proxies can be kept in hash based maps
+    private static Object objectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return proxy.getClass().getName();
+            default:
+                return null;
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class, new StatementHandler((String) args[0]));
+                case "isWrapperFor":
+                case "isReadOnly":
+                case "isClosed":
+                    return false;
+                case "getAutoCommit":
+                case "isValid":
+                    return true;
+                case "getTransactionIsolation":
+                    return Connection.TRANSACTION_REPEATABLE_READ;
+                case "getNetworkTimeout":
+                    return 0;
+                case "setAutoCommit":
+                case "setReadOnly":
+                case "setTransactionIsolation":
+                case "setNetworkTimeout":
+                case "getCatalog":
+                case "getWarnings":
+                case "clearWarnings":
+                case "commit":
+                case "rollback":
+                case "close":
+                    return null;
+                case "hashCode":
+                case "equals":
+                case "toString":
+                    return objectMethod(proxy, method, args);
+                default:
+                    throw new SQLFeatureNotSupportedException("Connection." + method.getName());
+            }
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final String sql;
+        private final Map<Integer, Object> params = new HashMap<Integer, Object>();
+        private final List<Map<Integer, Object>> batch = new ArrayList<Map<Integer, Object>>();
+
+        private StatementHandler(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args.length == 2 && args[0] instanceof Integer) {
+                params.put((Integer) args[0], args[1]);
+                return null;
+            }
+            switch (name) {
+                case "setFetchSize":
+                case "close":
+                    return null;
+                case "addBatch":
+                    batch.add(new HashMap<Integer, Object>(params));
+                    return null;
+                case "executeBatch":
+                    roundTrip();
+                    int[] counts = new int[batch.size()];
+                    for (int i = 0; i < counts.length; i++)
+                        counts[i] = update(sql, batch.get(i));
+                    batch.clear();
+                    return counts;
+                case "executeUpdate":
+                    roundTrip();
+                    return update(sql, params);
+                case "execute":
+                    roundTrip();
+                    update(sql, params);
+                    return false;
+                case "executeQuery":
+                    roundTrip();
+                    return proxy(ResultSet.class, new ResultSetHandler(query(sql, params)));
+                case "hashCode":
+                case "equals":
+                case "toString":
+                    return objectMethod(proxy, method, args);
+                default:
+                    throw new SQLFeatureNotSupportedException("PreparedStatement." + name);
+            }
+        }
+    }
+
+    private static class ResultSetHandler implements InvocationHandler {
+
+        private final List<Object[]> rows;
+        private int position = -1;
+        private boolean wasNull;
+
+        private ResultSetHandler(List<Object[]> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    return ++position < rows.size();
+                case "getString":
+                    return column((Integer) args[0]);
+                case "getInt":
+                    Object value = column((Integer) args[0]);
+                    return value == null ? 0 : value;
+                case "wasNull":
+                    return wasNull;
+                case "close":
+                    return null;
+                case "hashCode":
+                case "equals":
+                case "toString":
+                    return objectMethod(proxy, method, args);
+                default:
+                    throw new SQLFeatureNotSupportedException("ResultSet." + method.getName());
+            }
+        }
+
+        private Object column(int index) {
+            Object value = rows.get(position)[index - 1];
+            wasNull = value == null;
+            return value;
+        }
+    }
+
+    private static class Row {
+
+        private final String id;
+        private final String username;
+        private final Integer epochDay;
+        private final String guide;
+        private String description;
+        private String status;
+        private boolean archived;
+
+        private Row(String id, String username, Integer epochDay, String description, String guide, String status) {
+            this.id = id;
+            this.username = username;
+            this.epochDay = epochDay;
+            this.description = description;
+            this.guide = guide;
+            this.status = status;
+        }
+
+        //idwork, username, epoch day, description, guide, status as selected by the item queries
+        private Object[] columns() {
+            return new Object[] {id, username, epochDay, description, guide, status};
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.aws.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.aws.entities.WorkItem;
+import org.junit.Test;
+
+public class ColumnarReportFormatTest {
+
+    private static final byte[] MAGIC = "WRC1".getBytes(StandardCharsets.US_ASCII);
+
+    private static byte[] write(int rowGroupSize, List<WorkItem> items) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReportWriter writer = new ColumnarReportFormat(rowGroupSize).open(bytes);
+        for (WorkItem item : items)
+            writer.handle(item);
+        writer.finish();
+        return bytes.toByteArray();
+    }
+
+    private static WorkItem item(String guide, String date, String description, String status) {
+        WorkItem.Builder builder = WorkItem.builder().name("alice").guide(guide).description(description).status(status);
+        if (date != null)
+            builder.date(LocalDate.parse(date));
+        return builder.build();
+    }
+
+    private static String[] row(WorkItem item) {
+        return new String[] {item.getName(), item.getDate(), item.getGuide(), item.getDescription(), item.getStatus()};
+    }
+
+    @Test
+    public void readsBackEveryRowGroup() throws Exception {
+        List<WorkItem> items = Arrays.asList(
+                item("Java", "2024-03-01", "First", "Open"),
+                item("Java", "2024-03-02", "Zweite Überprüfung", "Open"),
+                item("Python", "2024-03-02", null, "Open"),
+                item(null, null, "日本語 😀", "Closed"),
+                item("Java", "2024-03-04", "Fifth", null),
+                item("Go", "2024-03-05", "", "Open"),
+                item("Java", "2024-03-05", "Seventh", "Open"));
+
+        byte[] data = write(3, items);
+        Reader reader = new Reader(data);
+
+        assertEquals(Arrays.asList(3L, 3L, 1L), reader.groupRows);
+        List<String[]> rows = reader.readAll();
+        assertEquals(items.size(), rows.size());
+        for (int i = 0; i < items.size(); i++)
+            assertArrayEquals(row(items.get(i)), rows.get(i));
+    }
+
+    @Test
+    public void usesDictionaryForRepeatedValues() throws Exception {
+        List<WorkItem> items = new ArrayList<WorkItem>();
+        for (int i = 0; i < 10; i++)
+            items.add(item(i % 2 == 0 ? "Java" : null, "2024-03-1" + i, "Item " + i, "Open"));
+
+        Reader reader = new Reader(write(4096, items));
+        reader.position = reader.groupOffsets.get(0).intValue();
+        reader.readVarint();
+
+        List<Integer> encodings = new ArrayList<Integer>();
+        List<List<String>> columns = new ArrayList<List<String>>();
+        for (int c = 0; c < 5; c++) {
+            encodings.add(reader.data[reader.position] & 0xFF);
+            columns.add(reader.readColumn(10));
+        }
+        //name, guide and status repeat; date and description are all distinct
+        assertEquals(Arrays.asList(1, 0, 1, 0, 1), encodings);
+        for (int i = 0; i < 10; i++)
+            assertArrayEquals(row(items.get(i)), new String[] {columns.get(0).get(i), columns.get(1).get(i),
+                    columns.get(2).get(i), columns.get(3).get(i), columns.get(4).get(i)});
+    }
+
+    @Test
+    public void writesEmptyReport() throws Exception {
+        byte[] data = write(16, new ArrayList<WorkItem>());
+
+        Reader reader = new Reader(data);
+        assertEquals(0, reader.groupRows.size());
+        assertEquals(4 + 1 + 4 + 4, data.length);
+    }
+
+    //Reads the layout documented in ColumnarReportFormat from the trailer, checking both magics
+    private static class Reader {
+
+        final byte[] data;
+        final List<Long> groupOffsets = new ArrayList<Long>();
+        final List<Long> groupRows = new ArrayList<Long>();
+        int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+            assertArrayEquals(MAGIC, Arrays.copyOfRange(data, 0, 4));
+            assertArrayEquals(MAGIC, Arrays.copyOfRange(data, data.length - 4, data.length));
+
+            int footerLength = ByteBuffer.wrap(data, data.length - 8, 4).getInt();
+            int footerStart = data.length - 8 - footerLength;
+            position = footerStart;
+            long groups = readVarint();
+            for (long i = 0; i < groups; i++) {
+                groupOffsets.add(readVarint());
+                groupRows.add(readVarint());
+            }
+            assertEquals(data.length - 8, position);
+            if (!groupOffsets.isEmpty())
+                assertEquals(4L, groupOffsets.get(0).longValue());
+        }
+
+        List<String[]> readAll() {
+            List<String[]> rows = new ArrayList<String[]>();
+            for (int g = 0; g < groupOffsets.size(); g++) {
+                position = groupOffsets.get(g).intValue();
+                int count = (int) readVarint();
+                assertEquals(groupRows.get(g).longValue(), count);
+
+                List<List<String>> columns = new ArrayList<List<String>>();
+                for (int c = 0; c < 5; c++)
+                    columns.add(readColumn(count));
+                for (int r = 0; r < count; r++) {
+                    String[] row = new String[5];
+                    for (int c = 0; c < 5; c++)
+                        row[c] = columns.get(c).get(r);
+                    rows.add(row);
+                }
+                long next = g + 1 < groupOffsets.size() ? groupOffsets.get(g + 1) : -1;
+                if (next >= 0)
+                    assertEquals(next, position);
+            }
+            return rows;
+        }
+
+        List<String> readColumn(int count) {
+            int encoding = data[position++];
+            List<String> values = new ArrayList<String>();
+            if (encoding == 0) {
+                for (int i = 0; i < count; i++)
+                    values.add(readString());
+                return values;
+            }
+            assertEquals(1, encoding);
+            int entries = (int) readVarint();
+            List<String> dictionary = new ArrayList<String>();
+            for (int i = 0; i < entries; i++)
+                dictionary.add(readString());
+            for (int i = 0; i < count; i++) {
+                int ref = (int) readVarint();
+                values.add(ref == 0 ? null : dictionary.get(ref - 1));
+            }
+            return values;
+        }
+
+        String readString() {
+            long length = readVarint();
+            if (length == 0)
+                return null;
+            String value = new String(data, position, (int) length - 1, StandardCharsets.UTF_8);
+            position += (int) length - 1;
+            return value;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = data[position++] & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.aws.services;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import com.aws.entities.WorkItem;
+import org.junit.Test;
+
+public class CsvReportFormatTest {
+
+    private static String write(WorkItem... items) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReportWriter writer = new CsvReportFormat().open(bytes);
+        for (WorkItem item : items)
+            writer.handle(item);
+        writer.finish();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static WorkItem item(String guide, String description, String status) {
+        return WorkItem.builder().name("alice").date(LocalDate.of(2024, 3, 1))
+                .guide(guide).description(description).status(status).build();
+    }
+
+    @Test
+    public void quotesFieldsWithSeparators() throws Exception {
+        String csv = write(item("Java", "a, \"b\"\nc", null));
+
+        assertEquals("Writer,Date,Guide,Description,Status\r\n"
+                + "alice,2024-03-01,Java,\"a, \"\"b\"\"\nc\",\r\n", csv);
+    }
+
+    @Test
+    public void prefixesFormulaCells() throws Exception {
+        String csv = write(
+                item("=1+2", "+SUM(A1)", "-3"),
+                item("@cmd", "\tTab", "=HYPERLINK(\"x\",\"y\")"),
+                item("a=b", "", "Open"));
+
+        assertEquals("Writer,Date,Guide,Description,Status\r\n"
+                + "alice,2024-03-01,'=1+2,'+SUM(A1),'-3\r\n"
+                + "alice,2024-03-01,'@cmd,'\tTab,\"'=HYPERLINK(\"\"x\"\",\"\"y\"\")\"\r\n"
+                + "alice,2024-03-01,a=b,,Open\r\n", csv);
+    }
+}
@@ -0,0 +1,74 @@
+package com.aws.services;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.aws.entities.WorkItem;
+
+//Measures how fast WriteExcel renders an .xls report: rows per second and bytes allocated per row
+//on the rendering thread. Not a unit test, so surefire does not run it. After mvn test-compile:
+//  java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+//      com.aws.services.WriteExcelBenchmark [rows] [iterations]
+public class WriteExcelBenchmark {
+
+    private static final String[] GUIDES = {"Java", "Python", "Go", "Rust", "JavaScript"};
+    private static final String[] STATUSES = {"Open", "In progress", "Done"};
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<WorkItem> items = items(rows);
+        WriteExcel excel = new WriteExcel();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        //Warm up until the JIT has compiled the rendering path
+        for (int i = 0; i < Math.max(3, iterations / 2); i++)
+            excel.write(items, new ByteArrayOutputStream(rows * 64));
+
+        double[] rowsPerSecond = new double[iterations];
+        long allocated = 0;
+        int size = 0;
+        for (int i = 0; i < iterations; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(rows * 64);
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            excel.write(items, out);
+            long nanos = System.nanoTime() - start;
+            allocated += threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+            rowsPerSecond[i] = rows / (nanos / 1e9);
+            size = out.size();
+        }
+
+        Arrays.sort(rowsPerSecond);
+        System.out.printf("rows=%d%niterations=%d%nrowsPerSecond.median=%.0f%nrowsPerSecond.best=%.0f%n"
+                        + "allocatedBytesPerRow=%d%nreportBytes=%d%n",
+                rows, iterations, rowsPerSecond[iterations / 2], rowsPerSecond[iterations - 1],
+                allocated / iterations / rows, size);
+    }
+
+    //One user's items: dates over a year, a few guides and statuses, descriptions of varying length
+    static List<WorkItem> items(int rows) {
+        List<WorkItem> items = new ArrayList<WorkItem>(rows);
+        LocalDate first = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < rows; i++) {
+            StringBuilder description = new StringBuilder("Work item ").append(i);
+            for (int words = i % 12; words > 0; words--)
+                description.append(" with some detail");
+            items.add(WorkItem.builder()
+                    .id(String.valueOf(i))
+                    .name("writer@example.com")
+                    .date(first.plusDays(i % 366))
+                    .guide(GUIDES[i % GUIDES.length])
+                    .description(description.toString())
+                    .status(STATUSES[i % STATUSES.length])
+                    .build());
+        }
+        return items;
+    }
+}